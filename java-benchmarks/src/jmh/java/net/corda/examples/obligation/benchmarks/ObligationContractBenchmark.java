@@ -0,0 +1,164 @@
+package net.corda.examples.obligation.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.CommandData;
+import net.corda.core.contracts.CommandWithParties;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.Issued;
+import net.corda.core.contracts.PartyAndReference;
+import net.corda.core.contracts.PrivacySalt;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.contracts.TransactionState;
+import net.corda.core.crypto.Crypto;
+import net.corda.core.crypto.SecureHash;
+import net.corda.core.identity.CordaX500Name;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.LedgerTransaction;
+import net.corda.core.utilities.OpaqueBytes;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+import net.corda.finance.contracts.asset.Cash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID;
+
+/**
+ * Measures the throughput of {@link ObligationContract#verify} for valid issue, transfer and settle transactions. The
+ * settle transaction pays part of the obligation off with {@code cashOutputs} cash states. Only the settle fixture,
+ * {@link SettleState}, takes that parameter, so the issue and transfer benchmarks run once rather than once per value.
+ *
+ * Run with {@code ./gradlew :java-benchmarks:jmh}. The gc profiler is enabled in the build, so the allocation rate per
+ * operation is reported alongside the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ObligationContractBenchmark {
+    private static final String CASH_CONTRACT_ID = "net.corda.finance.contracts.asset.Cash";
+    private static final Currency GBP = Currency.getInstance("GBP");
+
+    private final ObligationContract contract = new ObligationContract();
+    private LedgerTransaction issue;
+    private LedgerTransaction transfer;
+
+    @State(Scope.Benchmark)
+    public static class SettleState {
+        @Param({"1", "10", "100"})
+        public int cashOutputs;
+
+        private LedgerTransaction settle;
+
+        @Setup
+        public void setup() {
+            final Party notary = party("Notary");
+            final Party borrower = party("Borrower");
+            final Party lender = party("Lender");
+            final Party bank = party("Bank");
+
+            final Obligation obligation = new Obligation(new Amount<>(100_000_00L, GBP), lender, borrower);
+
+            // Each cash output pays off £1.
+            final PartyAndReference issuer = bank.ref(OpaqueBytes.of(new byte[1]));
+            final List<ContractState> settleOutputs = new ArrayList<>();
+            for (int i = 0; i < cashOutputs; i++) {
+                settleOutputs.add(new Cash.State(new Amount<>(100L, new Issued<>(issuer, GBP)), lender));
+            }
+            settleOutputs.add(obligation.pay(new Amount<>(cashOutputs * 100L, GBP)));
+            settle = transaction(notary,
+                    ImmutableList.of(obligation),
+                    settleOutputs,
+                    new ObligationContract.Commands.Settle(),
+                    obligation.getParticipantKeys());
+
+            // Fail fast if the transaction is invalid, rather than benchmarking the exception path.
+            new ObligationContract().verify(settle);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        final Party notary = party("Notary");
+        final Party borrower = party("Borrower");
+        final Party lender = party("Lender");
+        final Party newLender = party("NewLender");
+
+        final Obligation obligation = new Obligation(new Amount<>(100_000_00L, GBP), lender, borrower);
+        issue = transaction(notary,
+                ImmutableList.of(),
+                ImmutableList.of(obligation),
+                new ObligationContract.Commands.Issue(),
+                obligation.getParticipantKeys());
+
+        final Obligation transferred = obligation.withNewLender(newLender);
+        transfer = transaction(notary,
+                ImmutableList.of(obligation),
+                ImmutableList.of(transferred),
+                new ObligationContract.Commands.Transfer(),
+                ImmutableList.of(borrower.getOwningKey(), lender.getOwningKey(), newLender.getOwningKey()));
+
+        // Fail fast if either transaction is invalid, rather than benchmarking the exception path.
+        contract.verify(issue);
+        contract.verify(transfer);
+    }
+
+    @Benchmark
+    public void verifyIssue() {
+        contract.verify(issue);
+    }
+
+    @Benchmark
+    public void verifyTransfer() {
+        contract.verify(transfer);
+    }
+
+    @Benchmark
+    public void verifySettle(SettleState state) {
+        contract.verify(state.settle);
+    }
+
+    private static Party party(String organisation) {
+        final PublicKey key = Crypto.generateKeyPair(Crypto.DEFAULT_SIGNATURE_SCHEME).getPublic();
+        return new Party(new CordaX500Name(organisation, "London", "GB"), key);
+    }
+
+    private static LedgerTransaction transaction(Party notary, List<ContractState> inputs, List<ContractState> outputs,
+                                                 CommandData command, List<PublicKey> signers) {
+        final List<StateAndRef<ContractState>> inputStates = new ArrayList<>();
+        for (ContractState input : inputs) {
+            inputStates.add(new StateAndRef<>(state(input, notary), new StateRef(SecureHash.randomSHA256(), 0)));
+        }
+        final List<TransactionState<ContractState>> outputStates = new ArrayList<>();
+        for (ContractState output : outputs) {
+            outputStates.add(state(output, notary));
+        }
+        return new LedgerTransaction(
+                inputStates,
+                outputStates,
+                ImmutableList.of(new CommandWithParties<>(signers, ImmutableList.of(), command)),
+                ImmutableList.of(),
+                SecureHash.randomSHA256(),
+                notary,
+                null,
+                new PrivacySalt());
+    }
+
+    private static TransactionState<ContractState> state(ContractState data, Party notary) {
+        final String contract = data instanceof Cash.State ? CASH_CONTRACT_ID : OBLIGATION_CONTRACT_ID;
+        return new TransactionState<>(data, contract, notary);
+    }
+}
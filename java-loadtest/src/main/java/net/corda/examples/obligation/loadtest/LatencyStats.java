@@ -0,0 +1,87 @@
+package net.corda.examples.obligation.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histograms and failure counts, keyed by flow type or by flow type and progress step.
+ *
+ * Latencies are recorded in microseconds, up to an hour, to three significant digits. Nothing is recorded until
+ * {@link #startMeasuring()} is called, so that the warm-up doesn't skew the results.
+ */
+class LatencyStats {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long measuringSince = -1;
+    private volatile long measuringUntil = -1;
+
+    void startMeasuring() {
+        measuringSince = System.nanoTime();
+    }
+
+    void stopMeasuring() {
+        measuringUntil = System.nanoTime();
+    }
+
+    /** Returns whether an operation started at this time should be measured. */
+    boolean isMeasured(long startNanos) {
+        return measuringSince >= 0 && startNanos >= measuringSince && measuringUntil < 0;
+    }
+
+    void record(String key, long nanos, boolean succeeded) {
+        final Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        if (succeeded) {
+            entry.histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS));
+        } else {
+            entry.failures.incrementAndGet();
+        }
+    }
+
+    /** Counts an operation that wasn't started in open mode because too many were already in flight. */
+    void recordDropped() {
+        if (measuringSince >= 0 && measuringUntil < 0) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    void report(PrintStream out) {
+        final long end = measuringUntil < 0 ? System.nanoTime() : measuringUntil;
+        final double seconds = (end - measuringSince) / 1e9;
+        out.printf("Measured for %.1f s. %d operations were not started because too many were in flight.%n",
+                seconds, dropped.get());
+        out.printf("%-60s %8s %7s %8s %9s %9s %9s %9s %9s%n",
+                "flow / step", "count", "failed", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, Entry> row : new TreeMap<>(entries).entrySet()) {
+            final Histogram histogram = row.getValue().histogram;
+            out.printf("%-60s %8d %7d %8.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    row.getKey(),
+                    histogram.getTotalCount(),
+                    row.getValue().failures.get(),
+                    histogram.getTotalCount() / seconds,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static class Entry {
+        private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+        private final AtomicLong failures = new AtomicLong();
+    }
+}
@@ -0,0 +1,109 @@
+package net.corda.examples.obligation.loadtest;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.utilities.NetworkHostAndPort;
+
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The load generator's settings, parsed from {@code --name value} command line arguments.
+ */
+class LoadConfig {
+    enum Mode {
+        /** Operations are started at a fixed rate, whether or not earlier operations have finished. */
+        OPEN,
+        /** A fixed number of workers each start a new operation as soon as their last one finishes. */
+        CLOSED
+    }
+
+    static final String USAGE = String.join("\n",
+            "Usage: LoadGenerator --nodes host:port,host:port[,...] [options]",
+            "  --nodes          RPC addresses of the nodes to drive. Obligations are issued between them.",
+            "  --user           RPC user name (default user1).",
+            "  --password       RPC password (default test).",
+            "  --mode           open or closed (default closed).",
+            "  --rate           Operations started per second in open mode (default 10).",
+            "  --concurrency    Workers in closed mode, or the most operations in flight in open mode (default 8).",
+            "  --duration       Seconds to measure for (default 60).",
+            "  --warmup         Seconds to run before measuring (default 10).",
+            "  --mix            Relative weights of the operations (default issue=5,transfer=2,settle=3).",
+            "  --currency       Currency of the obligations (default GBP).",
+            "  --amount         Amount of each obligation, in whole units (default 100).",
+            "  --cash           Cash each node issues itself before the run, in whole units (default 1000000).",
+            "  --anonymous      Use confidential identities (default false).");
+
+    final List<NetworkHostAndPort> nodes;
+    final String user;
+    final String password;
+    final Mode mode;
+    final double rate;
+    final int concurrency;
+    final long durationSeconds;
+    final long warmupSeconds;
+    final Map<Operation, Integer> mix;
+    final Currency currency;
+    final long amount;
+    final long cash;
+    final boolean anonymous;
+
+    private LoadConfig(Map<String, String> args) {
+        if (!args.containsKey("nodes")) {
+            throw new IllegalArgumentException("--nodes is required.");
+        }
+        this.nodes = ImmutableList.copyOf(Arrays.stream(args.get("nodes").split(","))
+                .map(String::trim)
+                .map(NetworkHostAndPort.Companion::parse)
+                .collect(toList()));
+        if (nodes.size() < 2) {
+            throw new IllegalArgumentException("At least two nodes are needed.");
+        }
+        this.user = args.getOrDefault("user", "user1");
+        this.password = args.getOrDefault("password", "test");
+        this.mode = Mode.valueOf(args.getOrDefault("mode", "closed").toUpperCase());
+        this.rate = Double.parseDouble(args.getOrDefault("rate", "10"));
+        this.concurrency = Integer.parseInt(args.getOrDefault("concurrency", "8"));
+        this.durationSeconds = Long.parseLong(args.getOrDefault("duration", "60"));
+        this.warmupSeconds = Long.parseLong(args.getOrDefault("warmup", "10"));
+        this.mix = parseMix(args.getOrDefault("mix", "issue=5,transfer=2,settle=3"));
+        this.currency = Currency.getInstance(args.getOrDefault("currency", "GBP"));
+        this.amount = Long.parseLong(args.getOrDefault("amount", "100"));
+        this.cash = Long.parseLong(args.getOrDefault("cash", "1000000"));
+        this.anonymous = Boolean.parseBoolean(args.getOrDefault("anonymous", "false"));
+        if (rate <= 0 || concurrency < 1 || durationSeconds < 1 || warmupSeconds < 0 || amount < 1) {
+            throw new IllegalArgumentException("The rate, concurrency, duration and amount must be positive.");
+        }
+    }
+
+    static LoadConfig parse(String[] args) {
+        final Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException(String.format("Expected --name value but found %s.", args[i]));
+            }
+            values.put(args[i].substring(2), args[i + 1]);
+        }
+        return new LoadConfig(values);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            final String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(String.format("Invalid mix entry %s.", entry));
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The mix must have at least one positive weight.");
+        }
+        return weights;
+    }
+}
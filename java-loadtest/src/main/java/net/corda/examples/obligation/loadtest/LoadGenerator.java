@@ -0,0 +1,112 @@
+package net.corda.examples.obligation.loadtest;
+
+import net.corda.client.rpc.CordaRPCClient;
+import net.corda.client.rpc.CordaRPCConnection;
+import net.corda.core.contracts.Amount;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.utilities.NetworkHostAndPort;
+import net.corda.core.utilities.OpaqueBytes;
+import net.corda.finance.flows.CashIssueFlow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many obligation flows per second a set of nodes can sustain, and how long each flow and each of its
+ * progress steps takes.
+ *
+ * The generator connects to the nodes over RPC, for example to the nodes started by {@code NodeDriver.kt}. Each node
+ * first issues itself the configured amount of cash, split evenly across the notaries, so that it can settle the
+ * obligations it borrows. A mix of issue, transfer and settle flows is then run, either open-loop at a fixed rate or
+ * closed-loop with a fixed number of workers. After a warm-up, the throughput and the latency percentiles of each flow
+ * type and each progress step are measured and printed. Run it with no arguments to see the options.
+ */
+public class LoadGenerator {
+    // How long to wait for the flows still in flight once the measurement has ended.
+    private static final long DRAIN_TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws Exception {
+        final LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadConfig.USAGE);
+            System.exit(1);
+            return;
+        }
+
+        final List<CordaRPCConnection> connections = new ArrayList<>();
+        final List<Workload.Node> nodes = new ArrayList<>();
+        for (NetworkHostAndPort address : config.nodes) {
+            final CordaRPCConnection connection = new CordaRPCClient(address).start(config.user, config.password);
+            connections.add(connection);
+            final CordaRPCOps proxy = connection.getProxy();
+            nodes.add(new Workload.Node(proxy, proxy.nodeInfo().getLegalIdentities().get(0)));
+        }
+
+        try {
+            issueCash(config, nodes);
+            final LatencyStats stats = new LatencyStats();
+            run(config, new Workload(config, nodes, stats), stats);
+            stats.report(System.out);
+        } finally {
+            connections.forEach(CordaRPCConnection::notifyServerAndClose);
+        }
+    }
+
+    private static void issueCash(LoadConfig config, List<Workload.Node> nodes) throws Exception {
+        for (Workload.Node node : nodes) {
+            final List<Party> notaries = node.proxy.notaryIdentities();
+            final long perNotary = config.cash * 100 / notaries.size();
+            for (Party notary : notaries) {
+                final CashIssueFlow.IssueRequest request = new CashIssueFlow.IssueRequest(
+                        new Amount<>(perNotary, config.currency), OpaqueBytes.of(new byte[1]), notary);
+                node.proxy.startFlowDynamic(CashIssueFlow.class, request).getReturnValue().get();
+            }
+        }
+    }
+
+    private static void run(LoadConfig config, Workload workload, LatencyStats stats) throws InterruptedException {
+        final Semaphore inFlight = new Semaphore(config.concurrency);
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        final long startNanos = System.nanoTime();
+        final long measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        final long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        scheduler.schedule(stats::startMeasuring, config.warmupSeconds, TimeUnit.SECONDS);
+
+        if (config.mode == LoadConfig.Mode.OPEN) {
+            // Each operation's latency is measured from when it was due, so a slow node can't hide its queueing delay.
+            final long periodNanos = Math.max(1, (long) (1e9 / config.rate));
+            final AtomicLong ticks = new AtomicLong();
+            scheduler.scheduleAtFixedRate(() -> {
+                final long intendedStartNanos = startNanos + ticks.getAndIncrement() * periodNanos;
+                if (inFlight.tryAcquire()) {
+                    workload.start(intendedStartNanos, inFlight::release);
+                } else {
+                    stats.recordDropped();
+                }
+            }, 0, periodNanos, TimeUnit.NANOSECONDS);
+            TimeUnit.NANOSECONDS.sleep(endNanos - System.nanoTime());
+        } else {
+            while (System.nanoTime() < endNanos) {
+                inFlight.acquire();
+                workload.start(System.nanoTime(), inFlight::release);
+            }
+        }
+
+        stats.stopMeasuring();
+        scheduler.shutdownNow();
+        // Wait for the flows still running, so that the slowest operations are included in the results.
+        if (!inFlight.tryAcquire(config.concurrency, DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            System.err.printf("%d flows were still running after %d s.%n",
+                    config.concurrency - inFlight.availablePermits(), DRAIN_TIMEOUT_SECONDS);
+        }
+    }
+}
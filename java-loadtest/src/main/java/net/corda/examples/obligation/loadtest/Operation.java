@@ -0,0 +1,14 @@
+package net.corda.examples.obligation.loadtest;
+
+/**
+ * The obligation flows the load generator drives.
+ */
+enum Operation {
+    ISSUE,
+    TRANSFER,
+    SETTLE;
+
+    String label() {
+        return name().toLowerCase();
+    }
+}
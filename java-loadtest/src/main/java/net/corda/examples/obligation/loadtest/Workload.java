@@ -0,0 +1,212 @@
+package net.corda.examples.obligation.loadtest;
+
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.FlowProgressHandle;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.flows.IssueObligation;
+import net.corda.examples.obligation.flows.SettleObligation;
+import net.corda.examples.obligation.flows.TransferObligation;
+
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Chooses and starts the operations of a load test.
+ *
+ * Each operation is picked at random according to the configured mix. Issues are started by a random node, borrowing
+ * from another random node. Transfers are started by the lender of an obligation issued earlier, and settles by its
+ * borrower, who pays it off in full. An obligation is only used by one operation at a time. If there isn't an
+ * obligation free to transfer or settle, an issue is started instead.
+ *
+ * The latency of each operation is measured from the time it was meant to start, and the time spent in each progress
+ * step from the time the flow reported the step until it reported the next one or finished.
+ */
+class Workload {
+    /** A node being driven, with its RPC proxy and legal identity. */
+    static class Node {
+        final CordaRPCOps proxy;
+        final Party party;
+
+        Node(CordaRPCOps proxy, Party party) {
+            this.proxy = proxy;
+            this.party = party;
+        }
+    }
+
+    private static class Loan {
+        final UniqueIdentifier linearId;
+        final Amount<Currency> amount;
+        final int borrower;
+        int lender;
+
+        Loan(UniqueIdentifier linearId, Amount<Currency> amount, int borrower, int lender) {
+            this.linearId = linearId;
+            this.amount = amount;
+            this.borrower = borrower;
+            this.lender = lender;
+        }
+    }
+
+    private final LoadConfig config;
+    private final List<Node> nodes;
+    private final LatencyStats stats;
+    private final BlockingQueue<Loan> freeLoans = new LinkedBlockingQueue<>();
+    private final int totalWeight;
+
+    Workload(LoadConfig config, List<Node> nodes, LatencyStats stats) {
+        this.config = config;
+        this.nodes = nodes;
+        this.stats = stats;
+        this.totalWeight = config.mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /** Starts one operation that was meant to start at the given time and calls {@code onDone} once it finishes. */
+    void start(long intendedStartNanos, Runnable onDone) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation = pick(random.nextInt(totalWeight));
+        Loan loan = null;
+        if (operation != Operation.ISSUE) {
+            loan = freeLoans.poll();
+            // A transfer needs a node that is neither the lender nor the borrower.
+            if (loan == null || (operation == Operation.TRANSFER && nodes.size() < 3)) {
+                if (loan != null) {
+                    freeLoans.add(loan);
+                    loan = null;
+                }
+                operation = Operation.ISSUE;
+            }
+        }
+
+        final boolean measured = stats.isMeasured(intendedStartNanos);
+        try {
+            final FlowProgressHandle<SignedTransaction> handle;
+            final Consumer<SignedTransaction> onSuccess;
+            switch (operation) {
+                case ISSUE: {
+                    final int borrower = random.nextInt(nodes.size());
+                    final int lender = other(random, borrower, -1);
+                    final Amount<Currency> amount = new Amount<>(config.amount * 100, config.currency);
+                    handle = nodes.get(borrower).proxy.startTrackedFlowDynamic(IssueObligation.Initiator.class,
+                            amount, nodes.get(lender).party, config.anonymous);
+                    onSuccess = stx -> {
+                        final Obligation issued = stx.getTx().outputsOfType(Obligation.class).get(0);
+                        freeLoans.add(new Loan(issued.getLinearId(), amount, borrower, lender));
+                    };
+                    break;
+                }
+                case TRANSFER: {
+                    final Loan transferred = loan;
+                    final int newLender = other(random, loan.lender, loan.borrower);
+                    handle = nodes.get(loan.lender).proxy.startTrackedFlowDynamic(TransferObligation.Initiator.class,
+                            loan.linearId, nodes.get(newLender).party, config.anonymous);
+                    onSuccess = stx -> {
+                        transferred.lender = newLender;
+                        freeLoans.add(transferred);
+                    };
+                    break;
+                }
+                case SETTLE: {
+                    handle = nodes.get(loan.borrower).proxy.startTrackedFlowDynamic(SettleObligation.Initiator.class,
+                            loan.linearId, loan.amount, config.anonymous);
+                    onSuccess = stx -> { /* The obligation has been paid off. */ };
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+            track(operation, handle, intendedStartNanos, measured, loan, onSuccess, onDone);
+        } catch (RuntimeException e) {
+            if (measured) {
+                stats.record(operation.label(), System.nanoTime() - intendedStartNanos, false);
+            }
+            if (loan != null) {
+                freeLoans.add(loan);
+            }
+            onDone.run();
+        }
+    }
+
+    private void track(Operation operation, FlowProgressHandle<SignedTransaction> handle, long intendedStartNanos,
+                       boolean measured, Loan loan, Consumer<SignedTransaction> onSuccess, Runnable onDone) {
+        final StepTimer steps = new StepTimer(operation.label(), measured);
+        handle.getProgress().subscribe(steps::enter, error -> { /* The outcome is taken from the return value. */ });
+
+        handle.getReturnValue().then(future -> {
+            boolean succeeded;
+            try {
+                onSuccess.accept(future.get());
+                succeeded = true;
+            } catch (Exception e) {
+                // The obligation wasn't touched, so it can be used again.
+                if (loan != null) {
+                    freeLoans.add(loan);
+                }
+                succeeded = false;
+            }
+            if (measured) {
+                stats.record(operation.label(), System.nanoTime() - intendedStartNanos, succeeded);
+            }
+            steps.finish(succeeded);
+            onDone.run();
+            return null;
+        });
+    }
+
+    private Operation pick(int roll) {
+        for (Map.Entry<Operation, Integer> weight : config.mix.entrySet()) {
+            roll -= weight.getValue();
+            if (roll < 0) {
+                return weight.getKey();
+            }
+        }
+        return Operation.ISSUE;
+    }
+
+    // Picks a random node other than the two given.
+    private int other(ThreadLocalRandom random, int first, int second) {
+        while (true) {
+            final int candidate = random.nextInt(nodes.size());
+            if (candidate != first && candidate != second) {
+                return candidate;
+            }
+        }
+    }
+
+    /** Times how long a flow spends in each progress step. */
+    private class StepTimer {
+        private final String flow;
+        private final boolean measured;
+        private String step = null;
+        private long enteredNanos;
+
+        StepTimer(String flow, boolean measured) {
+            this.flow = flow;
+            this.measured = measured;
+        }
+
+        synchronized void enter(String nextStep) {
+            final long now = System.nanoTime();
+            if (step != null && measured) {
+                stats.record(flow + ": " + step, now - enteredNanos, true);
+            }
+            step = nextStep;
+            enteredNanos = now;
+        }
+
+        synchronized void finish(boolean succeeded) {
+            if (step != null && measured) {
+                stats.record(flow + ": " + step, System.nanoTime() - enteredNanos, succeeded);
+                step = null;
+            }
+        }
+    }
+}
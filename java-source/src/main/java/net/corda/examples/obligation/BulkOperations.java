@@ -0,0 +1,226 @@
+package net.corda.examples.obligation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.FlowHandle;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.examples.obligation.flows.IssueObligation;
+import net.corda.examples.obligation.flows.SettleObligation;
+import net.corda.examples.obligation.flows.TransferObligation;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Runs a list of issue, transfer and settle operations and writes the outcome of each as newline-delimited JSON as soon
+ * as its flow finishes, so that bulk loads don't pay for an HTTP round trip per operation.
+ *
+ * At most {@code concurrency} flows are in flight at once. The default is set with the
+ * {@code obligation.api.bulkConcurrency} system property and is 8. Outcomes are written in the order the flows finish,
+ * each with the index of its operation in the request. A failed operation doesn't stop the others.
+ *
+ * Operations are given as a JSON array of objects, or as CSV with one operation per line. Both have the fields op, id,
+ * party, amount and currency, where op is issue-obligation, transfer-obligation or settle-obligation and the other
+ * fields are the query parameters of the end-point of the same name. A CSV header line starting with "op" is skipped.
+ */
+class BulkOperations implements StreamingOutput {
+    static final String CONCURRENCY_PROPERTY = "obligation.api.bulkConcurrency";
+    static final int DEFAULT_CONCURRENCY = 8;
+    static final int MAX_CONCURRENCY = 256;
+    static final String CSV_MEDIA_TYPE = "text/csv";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<String> FIELDS = ImmutableList.of("op", "id", "party", "amount", "currency");
+
+    private final CordaRPCOps rpcOps;
+    private final List<Operation> operations;
+    private final int concurrency;
+
+    BulkOperations(CordaRPCOps rpcOps, List<Operation> operations, int concurrency) {
+        this.rpcOps = rpcOps;
+        this.operations = operations;
+        this.concurrency = concurrency;
+    }
+
+    static int getDefaultConcurrency() {
+        return Integer.getInteger(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY);
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        final Semaphore inFlight = new Semaphore(concurrency);
+        final BlockingQueue<Map<String, Object>> outcomes = new LinkedBlockingQueue<>();
+        // Each party is only looked up once per request.
+        final Map<String, Party> parties = new HashMap<>();
+        final Function<String, Party> partyFromName =
+                name -> parties.computeIfAbsent(name, it -> ObligationApi.singlePartyFromName(rpcOps, it));
+
+        int written = 0;
+        try {
+            for (int index = 0; index < operations.size(); index++) {
+                // Write the outcomes of finished flows while waiting for a free slot.
+                while (!inFlight.tryAcquire()) {
+                    write(writer, outcomes.take());
+                    written++;
+                }
+
+                final Operation operation = operations.get(index);
+                final Map<String, Object> outcome = new LinkedHashMap<>();
+                outcome.put("index", index);
+                outcome.put("op", operation.op);
+                try {
+                    operation.start(rpcOps, partyFromName).getReturnValue().then(future -> {
+                        try {
+                            outcome.put("status", "committed");
+                            outcome.put("transactionId", future.get().getId().toString());
+                        } catch (Exception e) {
+                            outcome.put("status", "failed");
+                            outcome.put("error", errorMessage(e));
+                        }
+                        inFlight.release();
+                        outcomes.add(outcome);
+                        return null;
+                    });
+                } catch (Exception e) {
+                    outcome.put("status", "failed");
+                    outcome.put("error", errorMessage(e));
+                    inFlight.release();
+                    outcomes.add(outcome);
+                }
+            }
+
+            while (written < operations.size()) {
+                write(writer, outcomes.take());
+                written++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Some exceptions, such as a NullPointerException, have no message, so their type is reported instead.
+    private static String errorMessage(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    private static void write(Writer writer, Map<String, Object> outcome) throws IOException {
+        writer.write(MAPPER.writeValueAsString(outcome));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /** Parses a JSON array of operations. */
+    static List<Operation> parseJson(String body) throws IOException {
+        final JsonNode array = MAPPER.readTree(body);
+        if (array == null || !array.isArray()) {
+            throw new IllegalArgumentException("Expected a JSON array of operations.");
+        }
+        final List<Operation> operations = new ArrayList<>();
+        for (JsonNode item : array) {
+            final Map<String, String> fields = new HashMap<>();
+            for (String field : FIELDS) {
+                final JsonNode value = item.get(field);
+                if (value != null && !value.isNull()) {
+                    fields.put(field, value.asText());
+                }
+            }
+            operations.add(Operation.fromFields(fields, operations.size()));
+        }
+        return operations;
+    }
+
+    /** Parses CSV operations with the columns op, id, party, amount and currency. */
+    static List<Operation> parseCsv(String body) {
+        final List<Operation> operations = new ArrayList<>();
+        for (String line : body.split("\\r?\\n")) {
+            if (line.trim().isEmpty() || line.trim().startsWith("op")) {
+                continue;
+            }
+            final String[] values = line.split(",", -1);
+            final Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < values.length && i < FIELDS.size(); i++) {
+                if (!values[i].trim().isEmpty()) {
+                    fields.put(FIELDS.get(i), values[i].trim());
+                }
+            }
+            operations.add(Operation.fromFields(fields, operations.size()));
+        }
+        return operations;
+    }
+
+    static class Operation {
+        final String op;
+        final String id;
+        final String party;
+        final Integer amount;
+        final String currency;
+
+        Operation(String op, String id, String party, Integer amount, String currency) {
+            this.op = op;
+            this.id = id;
+            this.party = party;
+            this.amount = amount;
+            this.currency = currency;
+        }
+
+        private static Operation fromFields(Map<String, String> fields, int index) {
+            final String op = fields.get("op");
+            if (op == null) {
+                throw new IllegalArgumentException(String.format("Operation %d has no op.", index));
+            }
+            final Integer amount;
+            try {
+                amount = fields.containsKey("amount") ? Integer.valueOf(fields.get("amount")) : null;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Operation %d has an invalid amount.", index));
+            }
+            return new Operation(op, fields.get("id"), fields.get("party"), amount, fields.get("currency"));
+        }
+
+        FlowHandle<SignedTransaction> start(CordaRPCOps rpcOps, Function<String, Party> partyFromName) {
+            switch (op) {
+                case "issue-obligation":
+                    return rpcOps.startFlowDynamic(IssueObligation.Initiator.class,
+                            toAmount(), partyFromName.apply(party), true);
+                case "transfer-obligation":
+                    final UniqueIdentifier linearId = UniqueIdentifier.Companion.fromString(id);
+                    if (amount == null) {
+                        return rpcOps.startFlowDynamic(TransferObligation.Initiator.class,
+                                linearId, partyFromName.apply(party), true);
+                    }
+                    return rpcOps.startFlowDynamic(TransferObligation.Initiator.class,
+                            linearId, partyFromName.apply(party), true, toAmount());
+                case "settle-obligation":
+                    return rpcOps.startFlowDynamic(SettleObligation.Initiator.class,
+                            UniqueIdentifier.Companion.fromString(id), toAmount(), true);
+                default:
+                    throw new IllegalArgumentException(String.format("Unknown operation %s.", op));
+            }
+        }
+
+        private Amount<Currency> toAmount() {
+            return ObligationApi.toAmount(amount, currency);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.corda.examples.obligation;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.corda.core.messaging.FlowProgressHandle;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps the progress of flows started through the API so that it can be streamed to clients as server-sent events.
+ *
+ * Every step is buffered, so a client that connects after the flow has started still sees the steps it missed. Each
+ * stream ends with a "done" event carrying the result, or an "error" event carrying the failure. Flows are forgotten
+ * once nobody has asked about them for {@link #RETENTION_MINUTES} minutes.
+ *
+ * Events are written to each subscriber's {@link ChunkedOutput} as they happen, from the thread that reports them, so
+ * no request thread waits for a flow to progress.
+ */
+class FlowProgressStreams {
+    static final long RETENTION_MINUTES = 10;
+
+    private final Cache<UUID, TrackedFlow> flows = CacheBuilder.newBuilder()
+            .expireAfterAccess(RETENTION_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    FlowProgressStreams() {
+        // Only unfinished flows have subscribers left to keep alive.
+        ServerSentEvents.everyKeepAlive(() -> flows.asMap().values().forEach(TrackedFlow::keepAlive));
+    }
+
+    /** Starts buffering the flow's progress and returns its run ID. */
+    <T> UUID track(FlowProgressHandle<T> handle, Function<T, String> message) {
+        final UUID flowId = handle.getId().getUuid();
+        final TrackedFlow trackedFlow = new TrackedFlow();
+        flows.put(flowId, trackedFlow);
+
+        handle.getProgress().subscribe(
+                step -> trackedFlow.add("progress", step, false),
+                error -> { /* The outcome is reported from the return value. */ });
+        handle.getReturnValue().then(future -> {
+            try {
+                trackedFlow.add("done", message.apply(future.get()), true);
+            } catch (Exception e) {
+                trackedFlow.add("error", String.valueOf(e.getMessage()), true);
+            }
+            return null;
+        });
+        return flowId;
+    }
+
+    /** Returns a new event stream for the flow, or null if the flow is unknown. */
+    ChunkedOutput<String> stream(UUID flowId) {
+        final ChunkedOutput<String> output = new ChunkedOutput<>(String.class);
+        return subscribe(flowId, output) ? output : null;
+    }
+
+    /**
+     * Writes the flow's events so far to the output, then each new event as it happens, closing the output after the
+     * last. Returns false if the flow is unknown.
+     */
+    boolean subscribe(UUID flowId, ChunkedOutput<String> output) {
+        final TrackedFlow trackedFlow = flows.getIfPresent(flowId);
+        if (trackedFlow == null) {
+            return false;
+        }
+        trackedFlow.subscribe(output);
+        return true;
+    }
+
+    private static class TrackedFlow {
+        private final List<String> events = new ArrayList<>();
+        private final Set<ChunkedOutput<String>> subscribers = new HashSet<>();
+        private boolean finished = false;
+
+        synchronized void add(String event, String data, boolean last) {
+            if (finished) {
+                return;
+            }
+            final String chunk = ServerSentEvents.format(event, data);
+            events.add(chunk);
+            subscribers.removeIf(output -> !ServerSentEvents.send(output, chunk));
+            finished = last;
+            if (finished) {
+                subscribers.forEach(ServerSentEvents::close);
+                subscribers.clear();
+            }
+        }
+
+        synchronized void subscribe(ChunkedOutput<String> output) {
+            for (String chunk : events) {
+                if (!ServerSentEvents.send(output, chunk)) {
+                    return;
+                }
+            }
+            if (finished) {
+                ServerSentEvents.close(output);
+            } else {
+                subscribers.add(output);
+            }
+        }
+
+        synchronized void keepAlive() {
+            subscribers.removeIf(output -> !ServerSentEvents.send(output, ServerSentEvents.KEEP_ALIVE));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.corda.examples.obligation;
+
+import net.corda.core.messaging.FlowHandle;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static javax.ws.rs.core.Response.Status.ACCEPTED;
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.CREATED;
+
+/**
+ * Completes a suspended JAX-RS request when a flow finishes, so that no web server thread is held while the flow runs.
+ *
+ * If the flow has not finished within {@link #getTimeoutSeconds()} the client is told the flow was accepted and is
+ * still running, along with its run ID. The timeout is set with the {@code obligation.api.flowTimeoutSeconds} system
+ * property and defaults to 60 seconds.
+ */
+class FlowResponses {
+    static final String TIMEOUT_PROPERTY = "obligation.api.flowTimeoutSeconds";
+    static final long DEFAULT_TIMEOUT_SECONDS = 60;
+
+    private FlowResponses() {
+    }
+
+    static long getTimeoutSeconds() {
+        return Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    /** Resumes the response with 201 and the message for the flow's result, or 400 if the flow fails. */
+    static <T> void resumeWhenDone(AsyncResponse asyncResponse, FlowHandle<T> flowHandle, Function<T, String> message) {
+        asyncResponse.setTimeout(getTimeoutSeconds(), TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(response -> response.resume(Response.status(ACCEPTED)
+                .entity(String.format("Flow %s is still running.", flowHandle.getId().getUuid()))
+                .build()));
+
+        flowHandle.getReturnValue().then(future -> {
+            Response response;
+            try {
+                response = Response.status(CREATED).entity(message.apply(future.get())).build();
+            } catch (Exception e) {
+                response = Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+            }
+            // Ignored if the request has already timed out.
+            asyncResponse.resume(response);
+            return null;
+        });
+    }
+}
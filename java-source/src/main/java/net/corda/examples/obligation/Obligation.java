@@ -7,8 +7,13 @@ import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.crypto.NullKeys;
 import net.corda.core.identity.AbstractParty;
 import net.corda.core.identity.Party;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+import net.corda.core.schemas.QueryableState;
+import net.corda.examples.obligation.schema.ObligationSchemaV1;
 
 import java.security.PublicKey;
+import java.util.ArrayList;
 import java.util.Currency;
 import java.util.List;
 import java.util.Objects;
@@ -16,7 +21,7 @@ import java.util.stream.Collectors;
 
 import static net.corda.core.utilities.EncodingUtils.toBase58String;
 
-public class Obligation implements LinearState {
+public class Obligation implements LinearState, QueryableState {
     private final Amount<Currency> amount;
     private final AbstractParty lender;
     private final AbstractParty borrower;
@@ -73,6 +78,26 @@ public class Obligation implements LinearState {
         return ImmutableList.of(lender, borrower);
     }
 
+    @Override
+    public PersistentState generateMappedObject(MappedSchema schema) {
+        if (schema instanceof ObligationSchemaV1) {
+            return new ObligationSchemaV1.PersistentObligation(
+                    ObligationSchemaV1.keyHash(this.lender),
+                    ObligationSchemaV1.keyHash(this.borrower),
+                    this.amount.getToken().getCurrencyCode(),
+                    this.amount.getQuantity(),
+                    this.paid.getQuantity(),
+                    this.linearId.getId());
+        } else {
+            throw new IllegalArgumentException("Unrecognised schema " + schema);
+        }
+    }
+
+    @Override
+    public Iterable<MappedSchema> supportedSchemas() {
+        return ImmutableList.of(new ObligationSchemaV1());
+    }
+
     public Obligation pay(Amount<Currency> amountToPay) {
         return new Obligation(
                 this.amount,
@@ -87,6 +112,25 @@ public class Obligation implements LinearState {
         return new Obligation(this.amount, newLender, this.borrower, this.paid, this.linearId);
     }
 
+    /**
+     * Divides this obligation into new obligations with the given amounts, which must sum to this obligation's amount.
+     * The amount paid so far is allocated to the new obligations in order. Each new obligation has a fresh linear ID.
+     */
+    public List<Obligation> split(List<Amount<Currency>> amounts) {
+        long total = amounts.stream().mapToLong(Amount::getQuantity).sum();
+        if (total != this.amount.getQuantity()) {
+            throw new IllegalArgumentException("The split amounts must sum to the obligation's amount.");
+        }
+        List<Obligation> parts = new ArrayList<>();
+        long paidToAllocate = this.paid.getQuantity();
+        for (Amount<Currency> partAmount : amounts) {
+            long partPaid = Math.min(paidToAllocate, partAmount.getQuantity());
+            paidToAllocate -= partPaid;
+            parts.add(new Obligation(partAmount, this.lender, this.borrower, new Amount<>(partPaid, partAmount.getToken())));
+        }
+        return parts;
+    }
+
     public Obligation withoutLender() {
         return new Obligation(this.amount, NullKeys.INSTANCE.getNULL_PARTY(), this.borrower, this.paid, this.linearId);
     }
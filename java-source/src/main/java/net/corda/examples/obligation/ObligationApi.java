@@ -1,45 +1,97 @@
 package net.corda.examples.obligation;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import net.corda.core.contracts.Amount;
-import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.identity.Party;
 import net.corda.core.messaging.CordaRPCOps;
 import net.corda.core.messaging.FlowHandle;
+import net.corda.core.messaging.FlowProgressHandle;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.utilities.OpaqueBytes;
+import net.corda.examples.obligation.ObligationJsonSupport.Compact;
 import net.corda.examples.obligation.flows.IssueObligation;
 import net.corda.examples.obligation.flows.SettleObligation;
 import net.corda.examples.obligation.flows.TransferObligation;
-import net.corda.finance.contracts.asset.Cash;
+import net.corda.examples.obligation.schema.ObligationSchemaV1.PersistentObligation;
+import net.corda.examples.obligation.services.IdentityCache;
 import net.corda.finance.flows.AbstractCashFlow;
 import net.corda.finance.flows.CashIssueFlow;
+import org.glassfish.jersey.server.ChunkedOutput;
 
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Currency;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
-import static java.util.stream.Collectors.*;
+import static javax.ws.rs.core.Response.Status.ACCEPTED;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
-import static javax.ws.rs.core.Response.Status.CREATED;
-import static net.corda.finance.contracts.GetBalances.getCashBalances;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static net.corda.examples.obligation.FlowResponses.resumeWhenDone;
+import static net.corda.examples.obligation.ObligationJsonSupport.COMPACT_JSON;
+import static net.corda.examples.obligation.ObligationJsonSupport.isCompactRequested;
 
 @Path("obligation")
 public class ObligationApi {
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    // The largest page of obligations that may be requested at once.
+    static final int MAX_OBLIGATIONS_PAGE_SIZE = 1000;
+
+    // The obligation columns the obligations end-point may be sorted by.
+    private static final Set<String> SORTABLE_COLUMNS = ImmutableSet.of("amount", "paid", "outstanding", "currency");
+
     private final CordaRPCOps rpcOps;
+    private final ObligationMetrics metrics;
     private final Party myIdentity;
+    private final IdentityCache identities;
+    private final PeerDirectory peers;
+    private final FlowProgressStreams progressStreams = new FlowProgressStreams();
+    private final ObligationView obligationView;
+    private final VaultUpdateFeed vaultUpdates;
 
     public ObligationApi(CordaRPCOps rpcOps) {
+        this(rpcOps, new ObligationMetrics());
+    }
+
+    ObligationApi(CordaRPCOps rpcOps, ObligationMetrics metrics) {
         this.rpcOps = rpcOps;
+        this.metrics = metrics;
         this.myIdentity = rpcOps.nodeInfo().getLegalIdentities().get(0);
+        this.identities = new IdentityCache(rpcOps::wellKnownPartyFromAnonymous);
+        metrics.registerCache("identities",
+                () -> identities.getStats().hitCount(), () -> identities.getStats().missCount());
+        metrics.trackFlows(rpcOps);
+        this.peers = new PeerDirectory(myIdentity);
+        peers.track(rpcOps);
+        this.obligationView = new ObligationView(
+                rpcOps, party -> myIdentity.equals(identities.wellKnownPartyFromAnonymous(party)), metrics);
+        this.vaultUpdates = new VaultUpdateFeed(rpcOps, obligationView);
     }
 
     @GET
@@ -49,57 +101,275 @@ public class ObligationApi {
         return ImmutableMap.of("me", myIdentity);
     }
 
+    /**
+     * Returns the organisation names of the other nodes on the network, excluding notaries. If {@code prefix} is given
+     * only the names starting with it, ignoring case, are returned.
+     */
     @GET
     @Path("peers")
     @Produces(MediaType.APPLICATION_JSON)
-    public Map<String, List<String>> peers() {
-        // TODO: Not filtering me out properly.
-        return ImmutableMap.of("peers", rpcOps.networkMapSnapshot()
-                .stream()
-                .filter(nodeInfo -> nodeInfo.getLegalIdentities().get(0) != myIdentity)
-                .map(it -> it.getLegalIdentities().get(0).getName().getOrganisation())
-                .collect(toList()));
+    public Map<String, List<String>> peers(@QueryParam(value = "prefix") String prefix) {
+        return ImmutableMap.of("peers", peers.search(prefix));
     }
 
     @GET
     @Path("owed-per-currency")
     @Produces(MediaType.APPLICATION_JSON)
     public Map<Currency, Long> owedPerCurrency() {
-        return rpcOps.vaultQuery(Obligation.class).getStates()
-                .stream()
-                .filter(it -> it.getState().getData().getLender() != myIdentity)
-                .map(it -> it.getState().getData().getAmount())
-                .collect(groupingBy(
-                        Amount::getToken, summingLong(Amount::getQuantity)
-                ));
+        // What is still outstanding (the amount less what has been paid) on the obligations we are not the lender of,
+        // kept up to date by the view as the vault changes.
+        return obligationView.getOwedPerCurrency();
     }
 
+    /**
+     * Returns one page of unconsumed obligations from the in-memory {@link ObligationView}. Pages are numbered from 1
+     * and hold at most 1000 obligations. {@code sort} is a comma-separated list of columns (amount, paid, outstanding,
+     * currency or recorded), each optionally prefixed with '-' for descending order. The total number of obligations
+     * is returned in the X-Total-Count header.
+     */
     @GET
     @Path("obligations")
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<StateAndRef<Obligation>> obligations() {
-        return rpcOps.vaultQuery(Obligation.class).getStates();
+    @Produces({MediaType.APPLICATION_JSON, COMPACT_JSON})
+    public Response obligations(
+            @DefaultValue("1") @QueryParam(value = "page") int page,
+            @DefaultValue("200") @QueryParam(value = "pageSize") int pageSize,
+            @DefaultValue("recorded") @QueryParam(value = "sort") String sort,
+            @QueryParam(value = "view") String view,
+            @Context HttpHeaders headers) {
+        if (page < 1 || pageSize < 1 || pageSize > MAX_OBLIGATIONS_PAGE_SIZE) {
+            return Response.status(BAD_REQUEST).entity("Invalid page or page size.").build();
+        }
+
+        final Sort sorting;
+        try {
+            sorting = parseSort(sort);
+        } catch (IllegalArgumentException e) {
+            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+        }
+
+        final ObligationView.Page results = obligationView.getObligations(page, pageSize, sorting);
+        return entityResponse(results.states, view, headers)
+                .header(TOTAL_COUNT_HEADER, results.totalStatesAvailable)
+                .build();
+    }
+
+    /**
+     * Streams every unconsumed obligation as newline-delimited JSON, with resolved party names and outstanding amounts.
+     */
+    @GET
+    @Path("obligations/export")
+    @Produces(ObligationExport.MEDIA_TYPE)
+    public Response exportObligations() {
+        return Response.status(OK).entity(new ObligationExport(rpcOps, identities, metrics, Instant.now())).build();
+    }
+
+    /**
+     * Runs a JSON array or CSV list of issue, transfer and settle operations, with at most {@code concurrency} flows in
+     * flight, and streams the outcome of each operation as newline-delimited JSON as it finishes. See
+     * {@link BulkOperations}.
+     */
+    @POST
+    @Path("bulk")
+    @Consumes({MediaType.APPLICATION_JSON, BulkOperations.CSV_MEDIA_TYPE})
+    @Produces(ObligationExport.MEDIA_TYPE)
+    public Response bulk(
+            String body,
+            @QueryParam(value = "concurrency") Integer concurrency,
+            @Context HttpHeaders headers) {
+        final int limit = concurrency == null ? BulkOperations.getDefaultConcurrency() : concurrency;
+        if (limit < 1 || limit > BulkOperations.MAX_CONCURRENCY) {
+            return Response.status(BAD_REQUEST).entity("Invalid concurrency.").build();
+        }
+
+        final List<BulkOperations.Operation> operations;
+        try {
+            final MediaType type = headers.getMediaType();
+            operations = type != null && type.isCompatible(MediaType.valueOf(BulkOperations.CSV_MEDIA_TYPE))
+                    ? BulkOperations.parseCsv(body)
+                    : BulkOperations.parseJson(body);
+        } catch (IOException | IllegalArgumentException e) {
+            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        return Response.status(OK).entity(new BulkOperations(rpcOps, operations, limit)).build();
+    }
+
+    /**
+     * Converts a sort query parameter into a {@link Sort}. The state reference is always appended so that pages are stable
+     * when the requested columns contain duplicate values.
+     */
+    static Sort parseSort(String sort) {
+        final List<Sort.SortColumn> columns = new ArrayList<>();
+        for (String token : sort.split(",")) {
+            String column = token.trim();
+            if (column.isEmpty()) {
+                continue;
+            }
+            Sort.Direction direction = Sort.Direction.ASC;
+            if (column.startsWith("-")) {
+                direction = Sort.Direction.DESC;
+                column = column.substring(1);
+            }
+
+            final SortAttribute attribute;
+            if (column.equals("recorded")) {
+                attribute = new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME);
+            } else if (SORTABLE_COLUMNS.contains(column)) {
+                attribute = new SortAttribute.Custom(PersistentObligation.class, column);
+            } else {
+                throw new IllegalArgumentException(String.format("Cannot sort obligations by %s.", column));
+            }
+            columns.add(new Sort.SortColumn(attribute, direction));
+        }
+
+        columns.add(new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC));
+        columns.add(new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC));
+        return new Sort(columns);
     }
 
     @GET
     @Path("cash")
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<StateAndRef<Cash.State>> cash() {
-        return rpcOps.vaultQuery(Cash.State.class).getStates();
+    @Produces({MediaType.APPLICATION_JSON, COMPACT_JSON})
+    public Response cash(@QueryParam(value = "view") String view, @Context HttpHeaders headers) {
+        return entityResponse(obligationView.getCash(), view, headers).build();
+    }
+
+    /**
+     * Streams changes to the vault's obligations and cash as server-sent events, so that clients can keep their view of
+     * the vault up to date without polling. See {@link VaultUpdateFeed}.
+     */
+    @GET
+    @Path("vault-updates")
+    @Produces(ServerSentEvents.MEDIA_TYPE)
+    public Response vaultUpdates() {
+        final ChunkedOutput<String> stream = vaultUpdates.open();
+        if (stream == null) {
+            return Response.status(SERVICE_UNAVAILABLE).entity("Too many clients are following vault updates.").build();
+        }
+        return Response.ok(stream, ServerSentEvents.MEDIA_TYPE).header("Cache-Control", "no-cache").build();
+    }
+
+    /**
+     * Returns the web server's flow, request, vault query and cache metrics in the Prometheus text format. See
+     * {@link ObligationMetrics}.
+     */
+    @GET
+    @Path("metrics")
+    @Produces(ObligationMetrics.MEDIA_TYPE)
+    public Response metrics() {
+        final StreamingOutput output = stream -> metrics.write(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+        return Response.ok(output, ObligationMetrics.MEDIA_TYPE).header("Cache-Control", "no-cache").build();
+    }
+
+    // Wraps the entity so that it is written with the compact serializers if the client asked for them.
+    private static Response.ResponseBuilder entityResponse(Object entity, String view, HttpHeaders headers) {
+        if (isCompactRequested(view, headers)) {
+            return Response.status(OK).type(COMPACT_JSON).entity(new Compact(entity));
+        }
+        return Response.status(OK).type(MediaType.APPLICATION_JSON).entity(entity);
     }
 
     @GET
     @Path("cash-balances")
     @Produces(MediaType.APPLICATION_JSON)
     public Map<Currency, Amount<Currency>> cashBalances() {
-        return getCashBalances(rpcOps);
+        return obligationView.getCashBalances();
+    }
+
+    /**
+     * Starts an issue-obligation, transfer-obligation or settle-obligation flow and returns its ID straight away,
+     * without waiting for it to finish. The flow's progress can then be followed at {@code flows/{id}/progress}.
+     */
+    @GET
+    @Path("start-flow/{flow}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response startFlow(
+            @PathParam("flow") String flow,
+            @QueryParam(value = "id") String id,
+            @QueryParam(value = "party") String party,
+            @QueryParam(value = "amount") Integer amount,
+            @QueryParam(value = "currency") String currency) {
+        try {
+            final FlowProgressHandle<SignedTransaction> flowHandle;
+            switch (flow) {
+                case "issue-obligation":
+                    flowHandle = rpcOps.startTrackedFlowDynamic(
+                            IssueObligation.Initiator.class,
+                            toAmount(amount, currency), singlePartyFromName(rpcOps, party), true);
+                    break;
+                case "transfer-obligation":
+                    flowHandle = amount == null
+                            ? rpcOps.startTrackedFlowDynamic(
+                                    TransferObligation.Initiator.class,
+                                    UniqueIdentifier.Companion.fromString(id), singlePartyFromName(rpcOps, party), true)
+                            : rpcOps.startTrackedFlowDynamic(
+                                    TransferObligation.Initiator.class,
+                                    UniqueIdentifier.Companion.fromString(id), singlePartyFromName(rpcOps, party), true,
+                                    toAmount(amount, currency));
+                    break;
+                case "settle-obligation":
+                    flowHandle = rpcOps.startTrackedFlowDynamic(
+                            SettleObligation.Initiator.class,
+                            UniqueIdentifier.Companion.fromString(id), toAmount(amount, currency), true);
+                    break;
+                default:
+                    return Response.status(NOT_FOUND).entity(String.format("Unknown flow %s.", flow)).build();
+            }
+
+            final UUID flowId = progressStreams.track(flowHandle,
+                    result -> String.format("Transaction id %s committed to ledger.", result.getId()));
+            return Response.status(ACCEPTED).entity(ImmutableMap.of("flowId", flowId.toString())).build();
+        } catch (Exception e) {
+            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+        }
+    }
+
+    /**
+     * Streams the progress of a flow started with {@code start-flow} as server-sent events: a "progress" event for
+     * each step, then a "done" or "error" event with the outcome.
+     */
+    @GET
+    @Path("flows/{id}/progress")
+    @Produces(ServerSentEvents.MEDIA_TYPE)
+    public Response flowProgress(@PathParam("id") String id) {
+        final ChunkedOutput<String> stream;
+        try {
+            stream = progressStreams.stream(UUID.fromString(id));
+        } catch (IllegalArgumentException e) {
+            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+        }
+        if (stream == null) {
+            return Response.status(NOT_FOUND).entity(String.format("Unknown flow %s.", id)).build();
+        }
+        return Response.ok(stream, ServerSentEvents.MEDIA_TYPE).header("Cache-Control", "no-cache").build();
+    }
+
+    /** Returns the one party on the network whose name matches {@code name} exactly. Also used by {@link BulkOperations}. */
+    static Party singlePartyFromName(CordaRPCOps rpcOps, String name) {
+        final Set<Party> parties = rpcOps.partiesFromName(name, false);
+        if (parties.size() != 1) {
+            throw new IllegalStateException(String.format("Found %d identities for %s.", parties.size(), name));
+        }
+        return parties.iterator().next();
+    }
+
+    // Currency.getInstance throws without a message for a missing or unknown code, which would be a 400 with no body.
+    static Amount<Currency> toAmount(Integer amount, String currency) {
+        if (amount == null || currency == null) {
+            throw new IllegalArgumentException("Both an amount and a currency are required.");
+        }
+        try {
+            return new Amount<>((long) amount * 100, Currency.getInstance(currency));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format("Unknown currency %s.", currency));
+        }
     }
 
     @GET
     @Path("self-issue-cash")
-    public Response selfIssueCash(
+    public void selfIssueCash(
             @QueryParam(value = "amount") int amount,
-            @QueryParam(value = "currency") String currency) {
+            @QueryParam(value = "currency") String currency,
+            @Suspended AsyncResponse asyncResponse) {
 
         // 1. Prepare issue request.
         final Amount<Currency> issueAmount = new Amount<>((long) amount * 100, Currency.getInstance(currency));
@@ -111,23 +381,23 @@ public class ObligationApi {
         final OpaqueBytes issueRef = OpaqueBytes.of(new byte[1]);
         final CashIssueFlow.IssueRequest issueRequest = new CashIssueFlow.IssueRequest(issueAmount, issueRef, notary);
 
-        // 2. Start flow and wait for response.
+        // 2. Start flow and respond when it completes.
         try {
             final FlowHandle<AbstractCashFlow.Result> flowHandle = rpcOps.startFlowDynamic(CashIssueFlow.class, issueRequest);
-            final AbstractCashFlow.Result result = flowHandle.getReturnValue().get();
-            final String msg = result.getStx().getTx().getOutputStates().get(0).toString();
-            return Response.status(CREATED).entity(msg).build();
+            resumeWhenDone(asyncResponse, flowHandle,
+                    result -> result.getStx().getTx().getOutputStates().get(0).toString());
         } catch (Exception e) {
-            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+            asyncResponse.resume(Response.status(BAD_REQUEST).entity(e.getMessage()).build());
         }
     }
 
     @GET
     @Path("issue-obligation")
-    public Response issueObligation(
+    public void issueObligation(
             @QueryParam(value = "amount") int amount,
             @QueryParam(value = "currency") String currency,
-            @QueryParam(value = "party") String party) {
+            @QueryParam(value = "party") String party,
+            @Suspended AsyncResponse asyncResponse) {
 
         // 1. Get party objects for the counterparty.
         final Set<Party> lenderIdentities = rpcOps.partiesFromName(party, false);
@@ -140,27 +410,28 @@ public class ObligationApi {
         // 2. Create an amount object.
         final Amount issueAmount = new Amount<>((long) amount * 100, Currency.getInstance(currency));
 
-        // 3. Start the IssueObligation flow. We block and wait for the flow to return.
+        // 3. Start the IssueObligation flow. The response is sent when the flow returns.
         try {
             final FlowHandle<SignedTransaction> flowHandle = rpcOps.startFlowDynamic(
                     IssueObligation.Initiator.class,
                     issueAmount, lenderIdentity, true
             );
 
-            final SignedTransaction result = flowHandle.getReturnValue().get();
-            final String msg = String.format("Transaction id %s committed to ledger.\n%s",
-                    result.getId(), result.getTx().getOutputStates().get(0));
-            return Response.status(CREATED).entity(msg).build();
+            resumeWhenDone(asyncResponse, flowHandle, result -> String.format(
+                    "Transaction id %s committed to ledger.\n%s", result.getId(), result.getTx().getOutputStates().get(0)));
         } catch (Exception e) {
-            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+            asyncResponse.resume(Response.status(BAD_REQUEST).entity(e.getMessage()).build());
         }
     }
 
     @GET
     @Path("transfer-obligation")
-    public Response transferObligation(
+    public void transferObligation(
             @QueryParam(value = "id") String id,
-            @QueryParam(value = "party") String party) {
+            @QueryParam(value = "party") String party,
+            @QueryParam(value = "amount") Integer amount,
+            @QueryParam(value = "currency") String currency,
+            @Suspended AsyncResponse asyncResponse) {
         final UniqueIdentifier linearId = UniqueIdentifier.Companion.fromString(id);
 
         final Set<Party> newLenders = rpcOps.partiesFromName(party, false);
@@ -171,37 +442,47 @@ public class ObligationApi {
         final Party newLender = newLenders.iterator().next();
 
         try {
-            final FlowHandle flowHandle = rpcOps.startFlowDynamic(
-                    TransferObligation.Initiator.class,
-                    linearId, newLender, true);
+            // Only part of the obligation is transferred if an amount is given.
+            final Amount<Currency> transferAmount = amount == null ? null : toAmount(amount, currency);
+            final FlowHandle<SignedTransaction> flowHandle;
+            if (transferAmount == null) {
+                flowHandle = rpcOps.startFlowDynamic(
+                        TransferObligation.Initiator.class,
+                        linearId, newLender, true);
+            } else {
+                flowHandle = rpcOps.startFlowDynamic(
+                        TransferObligation.Initiator.class,
+                        linearId, newLender, true, transferAmount);
+            }
 
-            flowHandle.getReturnValue().get();
-            final String msg = String.format("Obligation %s transferred to %s.", id, party);
-            return Response.status(CREATED).entity(msg).build();
+            final String msg = amount == null
+                    ? String.format("Obligation %s transferred to %s.", id, party)
+                    : String.format("%s %s of obligation %s transferred to %s.", amount, currency, id, party);
+            resumeWhenDone(asyncResponse, flowHandle, result -> msg);
         } catch (Exception e) {
-            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+            asyncResponse.resume(Response.status(BAD_REQUEST).entity(e.getMessage()).build());
         }
     }
 
     @GET
     @Path("settle-obligation")
-    public Response settleObligation(
+    public void settleObligation(
             @QueryParam(value = "id") String id,
             @QueryParam(value = "amount") int amount,
-            @QueryParam(value = "currency") String currency) {
+            @QueryParam(value = "currency") String currency,
+            @Suspended AsyncResponse asyncResponse) {
         UniqueIdentifier linearId = UniqueIdentifier.Companion.fromString(id);
         Amount<Currency> settleAmount = new Amount<>((long) amount * 100, Currency.getInstance(currency));
 
         try {
-            final FlowHandle flowHandle = rpcOps.startFlowDynamic(
+            final FlowHandle<SignedTransaction> flowHandle = rpcOps.startFlowDynamic(
                     SettleObligation.Initiator.class,
                     linearId, settleAmount, true);
 
-            flowHandle.getReturnValue().get();
             final String msg = String.format("%s %s paid off on obligation id %s.", amount, currency, id);
-            return Response.status(CREATED).entity(msg).build();
+            resumeWhenDone(asyncResponse, flowHandle, result -> msg);
         } catch (Exception e) {
-            return Response.status(BAD_REQUEST).entity(e.getMessage()).build();
+            asyncResponse.resume(Response.status(BAD_REQUEST).entity(e.getMessage()).build());
         }
     }
-}
\ No newline at end of file
+}
@@ -3,15 +3,19 @@ package net.corda.examples.obligation;
 import com.google.common.collect.Sets;
 import net.corda.core.contracts.*;
 import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
 import net.corda.core.transactions.LedgerTransaction;
 import net.corda.finance.contracts.asset.Cash;
 
 import java.security.PublicKey;
 import java.util.Currency;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toSet;
 import static net.corda.core.contracts.ContractsDSL.requireSingleCommand;
@@ -31,6 +35,24 @@ public class ObligationContract implements Contract {
 
         class Settle extends TypeOnlyCommandData implements Commands {
         }
+
+        class BatchIssue extends TypeOnlyCommandData implements Commands {
+        }
+
+        class BatchTransfer extends TypeOnlyCommandData implements Commands {
+        }
+
+        class BatchSettle extends TypeOnlyCommandData implements Commands {
+        }
+
+        class Net extends TypeOnlyCommandData implements Commands {
+        }
+
+        class Merge extends TypeOnlyCommandData implements Commands {
+        }
+
+        class Split extends TypeOnlyCommandData implements Commands {
+        }
     }
 
     @Override
@@ -44,6 +66,18 @@ public class ObligationContract implements Contract {
             verifyTransfer(tx, setOfSigners);
         } else if (commandData instanceof Commands.Settle) {
             verifySettle(tx, setOfSigners);
+        } else if (commandData instanceof Commands.BatchIssue) {
+            verifyBatchIssue(tx, setOfSigners);
+        } else if (commandData instanceof Commands.BatchTransfer) {
+            verifyBatchTransfer(tx, setOfSigners);
+        } else if (commandData instanceof Commands.BatchSettle) {
+            verifyBatchSettle(tx, setOfSigners);
+        } else if (commandData instanceof Commands.Net) {
+            verifyNet(tx, setOfSigners);
+        } else if (commandData instanceof Commands.Merge) {
+            verifyMerge(tx, setOfSigners);
+        } else if (commandData instanceof Commands.Split) {
+            verifySplit(tx, setOfSigners);
         } else {
             throw new IllegalArgumentException("Unrecognised command.");
         }
@@ -71,6 +105,32 @@ public class ObligationContract implements Contract {
         });
     }
 
+    // This allows any number of obligations, to any number of lenders, to be issued in one transaction.
+    private void verifyBatchIssue(LedgerTransaction tx, Set<PublicKey> signers) {
+        requireThat(req -> {
+            req.using("No inputs should be consumed when issuing obligations.",
+                    tx.getInputStates().isEmpty());
+            List<Obligation> obligations = tx.outputsOfType(Obligation.class);
+            req.using("At least one obligation state should be created when batch issuing obligations.",
+                    !obligations.isEmpty());
+            req.using("Only obligation states should be created when batch issuing obligations.",
+                    obligations.size() == tx.getOutputs().size());
+
+            Set<PublicKey> participantKeys = new HashSet<>();
+            for (Obligation obligation : obligations) {
+                req.using("A newly issued obligation must have a positive amount.", obligation.getAmount().getQuantity() > 0);
+                req.using("A newly issued obligation must have nothing paid.", obligation.getPaid().getQuantity() == 0);
+                req.using("The lender and borrower cannot be the same identity.", !obligation.getBorrower().equals(obligation.getLender()));
+                participantKeys.addAll(keysFromParticipants(obligation));
+            }
+            req.using("Each newly issued obligation must have a distinct linear ID.",
+                    obligations.stream().map(Obligation::getLinearId).distinct().count() == obligations.size());
+            req.using("All lenders and borrowers together only may sign a batch obligation issue transaction.",
+                    signers.equals(participantKeys));
+            return null;
+        });
+    }
+
     // This only allows one obligation transfer per transaction.
     private void verifyTransfer(LedgerTransaction tx, Set<PublicKey> signers) {
         requireThat(req -> {
@@ -86,6 +146,39 @@ public class ObligationContract implements Contract {
         });
     }
 
+    // This allows a portfolio of obligations to be moved to a single new lender in one transaction.
+    private void verifyBatchTransfer(LedgerTransaction tx, Set<PublicKey> signers) {
+        requireThat(req -> {
+            List<Obligation> inputs = tx.inputsOfType(Obligation.class);
+            List<Obligation> outputs = tx.outputsOfType(Obligation.class);
+            req.using("A batch obligation transfer must consume at least one obligation.", !inputs.isEmpty());
+            req.using("A batch obligation transfer should only consume obligation states.", inputs.size() == tx.getInputs().size());
+            req.using("A batch obligation transfer should only create obligation states.", outputs.size() == tx.getOutputs().size());
+            req.using("A batch obligation transfer must create one output for each input.", inputs.size() == outputs.size());
+
+            Map<UniqueIdentifier, Obligation> outputsById = new HashMap<>();
+            for (Obligation output : outputs) {
+                outputsById.put(output.getLinearId(), output);
+            }
+            req.using("Each obligation may only be transferred once.", outputsById.size() == outputs.size());
+
+            AbstractParty newLender = outputs.get(0).getLender();
+            Set<PublicKey> participantKeys = new HashSet<>();
+            for (Obligation input : inputs) {
+                Obligation output = outputsById.get(input.getLinearId());
+                req.using("Each input obligation must have an output with the same linear ID.", output != null);
+                req.using("Only the lender property may change.", input.withoutLender().equals(output.withoutLender()));
+                req.using("The lender property must change in a transfer.", !input.getLender().equals(output.getLender()));
+                req.using("All obligations must be transferred to the same new lender.", output.getLender().equals(newLender));
+                participantKeys.addAll(keysFromParticipants(input));
+                participantKeys.addAll(keysFromParticipants(output));
+            }
+            req.using("The borrowers, old lenders and new lender only must sign a batch obligation transfer transaction",
+                    signers.equals(participantKeys));
+            return null;
+        });
+    }
+
     private void verifySettle(LedgerTransaction tx, Set<PublicKey> signers) {
         requireThat(req -> {
             // Check for the presence of an input obligation state.
@@ -133,4 +226,196 @@ public class ObligationContract implements Contract {
             return null;
         });
     }
-}
\ No newline at end of file
+
+    // This allows many obligations to be paid down with the cash from a single spend. The payment allocated to each
+    // obligation is the increase in its paid property, or everything outstanding if it has no output. The cash paid to
+    // each lender must equal the sum of the payments allocated to that lender's obligations.
+    private void verifyBatchSettle(LedgerTransaction tx, Set<PublicKey> signers) {
+        requireThat(req -> {
+            List<Obligation> obligationInputs = tx.inputsOfType(Obligation.class);
+            List<Obligation> obligationOutputs = tx.outputsOfType(Obligation.class);
+            req.using("There must be at least one input obligation.", !obligationInputs.isEmpty());
+
+            Currency currency = obligationInputs.get(0).getAmount().getToken();
+            req.using("All obligations settled together must be in the same currency.",
+                    obligationInputs.stream().allMatch(it -> it.getAmount().getToken().equals(currency)));
+
+            Map<UniqueIdentifier, Obligation> outputsById = new HashMap<>();
+            for (Obligation output : obligationOutputs) {
+                outputsById.put(output.getLinearId(), output);
+            }
+            req.using("Each obligation may only have one output.", outputsById.size() == obligationOutputs.size());
+
+            Map<AbstractParty, Long> allocatedPerLender = new HashMap<>();
+            Set<UniqueIdentifier> inputIds = new HashSet<>();
+            Set<PublicKey> participantKeys = new HashSet<>();
+            for (Obligation input : obligationInputs) {
+                inputIds.add(input.getLinearId());
+                participantKeys.addAll(keysFromParticipants(input));
+                Amount<Currency> outstanding = input.getAmount().minus(input.getPaid());
+
+                Obligation output = outputsById.get(input.getLinearId());
+                long allocated;
+                if (output == null) {
+                    // Fully settled.
+                    allocated = outstanding.getQuantity();
+                } else {
+                    req.using("Only the paid property may change when settling.",
+                            input.equals(new Obligation(output.getAmount(), output.getLender(), output.getBorrower(), input.getPaid(), output.getLinearId())));
+                    allocated = output.getPaid().getQuantity() - input.getPaid().getQuantity();
+                    req.using("Each partially settled obligation must be paid a positive amount.", allocated > 0);
+                    req.using("A fully settled obligation must not have an output.", allocated < outstanding.getQuantity());
+                }
+                allocatedPerLender.merge(input.getLender(), allocated, Long::sum);
+            }
+            req.using("Every output obligation must have a matching input.", inputIds.containsAll(outputsById.keySet()));
+
+            // We don't care about cash inputs, the Cash contract handles those.
+            List<Cash.State> cash = tx.outputsOfType(Cash.State.class);
+            for (Map.Entry<AbstractParty, Long> allocation : allocatedPerLender.entrySet()) {
+                long paidToLender = cash.stream()
+                        .filter(it -> it.getOwner().equals(allocation.getKey()))
+                        .filter(it -> it.getAmount().getToken().getProduct().equals(currency))
+                        .mapToLong(it -> it.getAmount().getQuantity())
+                        .sum();
+                req.using("The cash paid to each lender must equal the payments allocated to their obligations.",
+                        paidToLender == allocation.getValue());
+            }
+
+            req.using("The lenders and borrowers together only must sign a batch obligation settle transaction.",
+                    signers.equals(participantKeys));
+            return null;
+        });
+    }
+
+    // This replaces a set of obligations in one currency with new obligations that leave every party's net position
+    // unchanged. No cash moves, so everyone whose obligations are consumed must agree to the new ones.
+    // The contract can't tell which confidential identities belong to the same party, so once any are involved it can
+    // only check that nothing more is owed than before, and every lender and borrower on both sides must sign. Each
+    // of them checks their own net position off-ledger before signing.
+    private void verifyNet(LedgerTransaction tx, Set<PublicKey> signers) {
+        requireThat(req -> {
+            List<Obligation> inputs = tx.inputsOfType(Obligation.class);
+            List<Obligation> outputs = tx.outputsOfType(Obligation.class);
+            req.using("At least two obligations must be consumed when netting.", inputs.size() >= 2);
+            req.using("Only obligation states may be consumed when netting.", inputs.size() == tx.getInputs().size());
+            req.using("Only obligation states may be created when netting.", outputs.size() == tx.getOutputs().size());
+            req.using("Netting must reduce the number of obligations.", outputs.size() < inputs.size());
+
+            Currency currency = inputs.get(0).getAmount().getToken();
+            req.using("All obligations netted together must be in the same currency.",
+                    inputs.stream().allMatch(it -> it.getAmount().getToken().equals(currency))
+                            && outputs.stream().allMatch(it -> it.getAmount().getToken().equals(currency)));
+
+            Set<UniqueIdentifier> inputIds = inputs.stream().map(Obligation::getLinearId).collect(toSet());
+            for (Obligation output : outputs) {
+                req.using("A net obligation must have a positive amount.", output.getAmount().getQuantity() > 0);
+                req.using("A net obligation must have nothing paid.", output.getPaid().getQuantity() == 0);
+                req.using("The lender and borrower cannot be the same identity.", !output.getBorrower().equals(output.getLender()));
+                req.using("A net obligation must have a new linear ID.", !inputIds.contains(output.getLinearId()));
+            }
+            req.using("Each net obligation must have a distinct linear ID.",
+                    outputs.stream().map(Obligation::getLinearId).distinct().count() == outputs.size());
+
+            boolean wellKnownOnly = Stream.concat(inputs.stream(), outputs.stream()).allMatch(
+                    it -> it.getLender() instanceof Party && it.getBorrower() instanceof Party);
+            if (wellKnownOnly) {
+                req.using("Netting must not change any party's net position.",
+                        ObligationNetting.netPositions(inputs).equals(ObligationNetting.netPositions(outputs)));
+            } else {
+                req.using("Netting must not increase the total outstanding.",
+                        outstanding(outputs) <= outstanding(inputs));
+            }
+
+            Set<PublicKey> participantKeys = new HashSet<>();
+            inputs.forEach(it -> participantKeys.addAll(keysFromParticipants(it)));
+            outputs.forEach(it -> participantKeys.addAll(keysFromParticipants(it)));
+            req.using("Every lender and borrower of the netted and net obligations only must sign a net transaction.",
+                    signers.equals(participantKeys));
+            return null;
+        });
+    }
+
+    private static long outstanding(List<Obligation> obligations) {
+        return obligations.stream().mapToLong(it -> it.getAmount().getQuantity() - it.getPaid().getQuantity()).sum();
+    }
+
+    // This consolidates several obligations between the same two parties into one, summing the amounts and payments.
+    // The contract can't tell whether two confidential identities belong to the same party, so instead every lender and
+    // borrower on both sides of the merge must sign, and the merged lender and borrower must be ones being merged.
+    // Between well-known parties every obligation merged must be between the merged lender and borrower.
+    private void verifyMerge(LedgerTransaction tx, Set<PublicKey> signers) {
+        requireThat(req -> {
+            List<Obligation> inputs = tx.inputsOfType(Obligation.class);
+            req.using("At least two obligations must be consumed when merging.", inputs.size() >= 2);
+            req.using("Only obligation states may be consumed when merging.", inputs.size() == tx.getInputs().size());
+            List<Obligation> outputs = tx.outputsOfType(Obligation.class);
+            req.using("Only one obligation state should be created when merging.",
+                    outputs.size() == 1 && tx.getOutputs().size() == 1);
+            Obligation output = outputs.get(0);
+
+            Currency currency = output.getAmount().getToken();
+            req.using("All obligations merged together must be in the same currency.",
+                    inputs.stream().allMatch(it -> it.getAmount().getToken().equals(currency)));
+            req.using("The merged amount must be the sum of the amounts.",
+                    output.getAmount().getQuantity() == inputs.stream().mapToLong(it -> it.getAmount().getQuantity()).sum());
+            req.using("The merged paid must be the sum of the amounts paid.",
+                    output.getPaid().getQuantity() == inputs.stream().mapToLong(it -> it.getPaid().getQuantity()).sum());
+            req.using("The lender and borrower cannot be the same identity.", !output.getBorrower().equals(output.getLender()));
+
+            Set<PublicKey> participantKeys = new HashSet<>(keysFromParticipants(output));
+            inputs.forEach(it -> participantKeys.addAll(keysFromParticipants(it)));
+            req.using("Every lender and borrower of the merged obligations only must sign a merge transaction.",
+                    signers.equals(participantKeys));
+
+            boolean wellKnownOnly = Stream.concat(inputs.stream(), outputs.stream()).allMatch(
+                    it -> it.getLender() instanceof Party && it.getBorrower() instanceof Party);
+            if (wellKnownOnly) {
+                req.using("All obligations merged together must have the same lender and borrower as the merged obligation.",
+                        inputs.stream().allMatch(it ->
+                                it.getLender().equals(output.getLender()) && it.getBorrower().equals(output.getBorrower())));
+            } else {
+                req.using("The merged lender must be the lender of one of the merged obligations.",
+                        inputs.stream().anyMatch(it -> it.getLender().equals(output.getLender())));
+                req.using("The merged borrower must be the borrower of one of the merged obligations.",
+                        inputs.stream().anyMatch(it -> it.getBorrower().equals(output.getBorrower())));
+            }
+            return null;
+        });
+    }
+
+    // This divides one obligation into several with fresh linear IDs, whose amounts and payments sum to the original.
+    // Each part may have a new lender, which allows part of an obligation to be transferred.
+    private void verifySplit(LedgerTransaction tx, Set<PublicKey> signers) {
+        requireThat(req -> {
+            req.using("An obligation split transaction should only consume one input state.", tx.getInputs().size() == 1);
+            List<Obligation> inputs = tx.inputsOfType(Obligation.class);
+            List<Obligation> outputs = tx.outputsOfType(Obligation.class);
+            req.using("An obligation split transaction should only consume an obligation.", inputs.size() == 1);
+            req.using("Only obligation states may be created when splitting.", outputs.size() == tx.getOutputs().size());
+            req.using("An obligation must be split into at least two obligations.", outputs.size() >= 2);
+            Obligation input = inputs.get(0);
+
+            Currency currency = input.getAmount().getToken();
+            Set<PublicKey> participantKeys = new HashSet<>(keysFromParticipants(input));
+            for (Obligation output : outputs) {
+                req.using("The currency may not change when splitting.", output.getAmount().getToken().equals(currency));
+                req.using("The borrower may not change when splitting.", output.getBorrower().equals(input.getBorrower()));
+                req.using("Each part of a split obligation must have a positive amount.", output.getAmount().getQuantity() > 0);
+                req.using("No part of a split obligation may be overpaid.",
+                        output.getPaid().getQuantity() >= 0 && output.getPaid().compareTo(output.getAmount()) <= 0);
+                req.using("Each part of a split obligation must have a new linear ID.", !output.getLinearId().equals(input.getLinearId()));
+                participantKeys.addAll(keysFromParticipants(output));
+            }
+            req.using("Each part of a split obligation must have a distinct linear ID.",
+                    outputs.stream().map(Obligation::getLinearId).distinct().count() == outputs.size());
+            req.using("The split amounts must sum to the original amount.",
+                    outputs.stream().mapToLong(it -> it.getAmount().getQuantity()).sum() == input.getAmount().getQuantity());
+            req.using("The split payments must sum to the original amount paid.",
+                    outputs.stream().mapToLong(it -> it.getPaid().getQuantity()).sum() == input.getPaid().getQuantity());
+            req.using("The borrower and every old and new lender only must sign an obligation split transaction.",
+                    signers.equals(participantKeys));
+            return null;
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package net.corda.examples.obligation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.TimeCondition;
+import net.corda.core.node.services.vault.QueryCriteria.TimeInstantType;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.examples.obligation.services.IdentityCache;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.utilities.EncodingUtils.toBase58String;
+
+/**
+ * Writes every obligation that was unconsumed at the time the export started as newline-delimited JSON.
+ *
+ * The vault is walked one page at a time and each page is flushed before the next is fetched, so memory use does not
+ * grow with the size of the vault. The query selects the states recorded before the export started that are either
+ * still unconsumed or were consumed after it started. Neither set changes as obligations are settled during the
+ * export, so page offsets do not shift.
+ */
+class ObligationExport implements StreamingOutput {
+    static final String MEDIA_TYPE = "application/x-ndjson";
+    static final int PAGE_SIZE = 500;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final CordaRPCOps rpcOps;
+    private final IdentityCache identities;
+    private final ObligationMetrics metrics;
+    private final Instant asOf;
+
+    ObligationExport(CordaRPCOps rpcOps, IdentityCache identities, ObligationMetrics metrics, Instant asOf) {
+        this.rpcOps = rpcOps;
+        this.identities = identities;
+        this.metrics = metrics;
+        this.asOf = asOf;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        final QueryCriteria criteria = unconsumedAt(asOf);
+        final Sort sorting = new Sort(ImmutableList.of(
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+
+        int pageNumber = DEFAULT_PAGE_NUM;
+        while (true) {
+            final PageSpecification paging = new PageSpecification(pageNumber, PAGE_SIZE);
+            final Vault.Page<Obligation> page = metrics.timeVaultQuery(
+                    "obligation-export-page",
+                    () -> rpcOps.vaultQueryBy(criteria, paging, sorting, Obligation.class),
+                    results -> results.getStates().size());
+            final List<StateAndRef<Obligation>> states = page.getStates();
+            for (StateAndRef<Obligation> state : states) {
+                writer.write(MAPPER.writeValueAsString(toRow(state)));
+                writer.write('\n');
+            }
+            writer.flush();
+
+            if (states.size() < PAGE_SIZE) {
+                break;
+            }
+            pageNumber++;
+        }
+    }
+
+    /** Selects the states that were recorded, and not yet consumed, at the given time. */
+    static QueryCriteria unconsumedAt(Instant asOf) {
+        final QueryCriteria recorded = new VaultQueryCriteria(
+                Vault.StateStatus.ALL,
+                null,
+                null,
+                null,
+                null,
+                new TimeCondition(TimeInstantType.RECORDED, Builder.lessThanOrEqual(asOf)));
+        final QueryCriteria consumedLater = new VaultQueryCriteria(
+                Vault.StateStatus.CONSUMED,
+                null,
+                null,
+                null,
+                null,
+                new TimeCondition(TimeInstantType.CONSUMED, Builder.greaterThan(asOf)));
+        return recorded.and(new VaultQueryCriteria(Vault.StateStatus.UNCONSUMED).or(consumedLater));
+    }
+
+    private Map<String, Object> toRow(StateAndRef<Obligation> stateAndRef) {
+        final Obligation obligation = stateAndRef.getState().getData();
+        final Map<String, Object> row = new LinkedHashMap<>();
+        row.put("linearId", obligation.getLinearId().toString());
+        row.put("stateRef", stateAndRef.getRef().toString());
+        row.put("lender", resolveName(obligation.getLender()));
+        row.put("borrower", resolveName(obligation.getBorrower()));
+        row.put("currency", obligation.getAmount().getToken().getCurrencyCode());
+        row.put("amount", obligation.getAmount().getQuantity());
+        row.put("paid", obligation.getPaid().getQuantity());
+        row.put("outstanding", obligation.getAmount().minus(obligation.getPaid()).getQuantity());
+        return row;
+    }
+
+    // Falls back to the public key if the node cannot resolve a confidential identity.
+    private String resolveName(AbstractParty party) {
+        final Party wellKnownParty = identities.wellKnownPartyFromAnonymous(party);
+        if (wellKnownParty != null) {
+            return wellKnownParty.getName().toString();
+        }
+        return toBase58String(party.getOwningKey());
+    }
+}
@@ -0,0 +1,173 @@
+package net.corda.examples.obligation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.AnonymousParty;
+import net.corda.core.identity.Party;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.util.Currency;
+
+import static net.corda.core.crypto.CryptoUtils.toStringShort;
+
+/**
+ * Compact JSON representations of obligations and the types they contain.
+ *
+ * The compact serializers are not registered on the web server's object mapper directly, as that would change the
+ * output of every end-point. Instead, an end-point opts in by wrapping its result in {@link Compact}, which is written
+ * using a copy of the web server's mapper with the compact serializers registered.
+ */
+public class ObligationJsonSupport {
+    public static final String COMPACT_JSON = "application/vnd.obligation.compact+json";
+    public static final String COMPACT_VIEW = "compact";
+
+    private ObligationJsonSupport() {
+    }
+
+    public static void registerCompactView(ObjectMapper objectMapper) {
+        final ObjectWriter compactWriter = objectMapper.copy().registerModule(createCompactModule()).writer();
+        objectMapper.registerModule(new SimpleModule("ObligationCompactView")
+                .addSerializer(Compact.class, new CompactSerializer(compactWriter)));
+    }
+
+    public static SimpleModule createCompactModule() {
+        final PartySerializer partySerializer = new PartySerializer();
+        return new SimpleModule("ObligationCompact")
+                .addSerializer(Obligation.class, new ObligationSerializer(false))
+                .addSerializer(Amount.class, new AmountSerializer())
+                .addSerializer(AbstractParty.class, partySerializer)
+                .addSerializer(Party.class, partySerializer)
+                .addSerializer(AnonymousParty.class, partySerializer)
+                .addSerializer(StateAndRef.class, new StateAndRefSerializer());
+    }
+
+    /** Returns true if the client asked for compact JSON either with a view query parameter or the Accept header. */
+    public static boolean isCompactRequested(String view, HttpHeaders headers) {
+        if (COMPACT_VIEW.equals(view)) {
+            return true;
+        }
+        final String accept = headers.getHeaderString(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(COMPACT_JSON);
+    }
+
+    /** Marks a response entity to be written using the compact serializers. */
+    public static class Compact {
+        private final Object value;
+
+        public Compact(Object value) {
+            this.value = value;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+    }
+
+    private static class CompactSerializer extends JsonSerializer<Compact> {
+        private final ObjectWriter compactWriter;
+
+        CompactSerializer(ObjectWriter compactWriter) {
+            this.compactWriter = compactWriter;
+        }
+
+        @Override
+        public void serialize(Compact compact, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            compactWriter.writeValue(gen, compact.getValue());
+        }
+    }
+
+    // Writes {"linearId": ..., "lender": ..., "borrower": ..., "currency": ..., "amount": ..., "paid": ...} with the
+    // amounts as quantities of the currency's smallest unit.
+    private static class ObligationSerializer extends JsonSerializer<Obligation> {
+        private final boolean unwrapping;
+
+        ObligationSerializer(boolean unwrapping) {
+            this.unwrapping = unwrapping;
+        }
+
+        @Override
+        public void serialize(Obligation obligation, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (!unwrapping) {
+                gen.writeStartObject();
+            }
+            gen.writeStringField("linearId", obligation.getLinearId().getId().toString());
+            provider.defaultSerializeField("lender", obligation.getLender(), gen);
+            provider.defaultSerializeField("borrower", obligation.getBorrower(), gen);
+            gen.writeStringField("currency", obligation.getAmount().getToken().getCurrencyCode());
+            gen.writeNumberField("amount", obligation.getAmount().getQuantity());
+            gen.writeNumberField("paid", obligation.getPaid().getQuantity());
+            if (!unwrapping) {
+                gen.writeEndObject();
+            }
+        }
+
+        @Override
+        public boolean isUnwrappingSerializer() {
+            return unwrapping;
+        }
+
+        @Override
+        public JsonSerializer<Obligation> unwrappingSerializer(NameTransformer unwrapper) {
+            return new ObligationSerializer(true);
+        }
+    }
+
+    private static class AmountSerializer extends JsonSerializer<Amount> {
+        @Override
+        public void serialize(Amount amount, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            final Object token = amount.getToken();
+            gen.writeStartObject();
+            gen.writeNumberField("quantity", amount.getQuantity());
+            if (token instanceof Currency) {
+                gen.writeStringField("currency", ((Currency) token).getCurrencyCode());
+            } else {
+                gen.writeStringField("token", token.toString());
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    // Well-known parties are written as their X.500 name and confidential identities as a short hash of their key.
+    private static class PartySerializer extends JsonSerializer<AbstractParty> {
+        @Override
+        public void serialize(AbstractParty party, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            if (party instanceof Party) {
+                gen.writeString(((Party) party).getName().toString());
+            } else {
+                gen.writeString(toStringShort(party.getOwningKey()));
+            }
+        }
+    }
+
+    // Writes the state reference alongside the state's data. The notary, contract and encumbrance are omitted. Data
+    // with an unwrapping serializer, such as obligations, is written inline rather than under a "data" field.
+    @SuppressWarnings("unchecked")
+    private static class StateAndRefSerializer extends JsonSerializer<StateAndRef> {
+        @Override
+        public void serialize(StateAndRef stateAndRef, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            final Object data = stateAndRef.getState().getData();
+            final JsonSerializer<Object> dataSerializer = provider
+                    .findValueSerializer(data.getClass())
+                    .unwrappingSerializer(NameTransformer.NOP);
+
+            gen.writeStartObject();
+            gen.writeStringField("ref", stateAndRef.getRef().toString());
+            if (dataSerializer.isUnwrappingSerializer()) {
+                dataSerializer.serialize(data, gen, provider);
+            } else {
+                gen.writeFieldName("data");
+                provider.findValueSerializer(data.getClass()).serialize(data, gen, provider);
+            }
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package net.corda.examples.obligation;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.flows.StateMachineRunId;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.messaging.StateMachineInfo;
+import net.corda.core.messaging.StateMachineUpdate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * The web server's metrics, written in the Prometheus text exposition format by the {@code obligation/metrics}
+ * end-point:
+ *
+ * - {@code obligation_flows_started_total} and {@code obligation_flows_completed_total}: the flows started and finished
+ *   on the node since the web server connected, by flow class and, for finished flows, outcome.
+ * - {@code obligation_flows_in_flight}: the flows running on the node, by flow class.
+ * - {@code obligation_http_request_duration_seconds}: a histogram of REST request latency by route, method and status.
+ * - {@code obligation_vault_query_duration_seconds} and {@code obligation_vault_query_states}: histograms of the
+ *   latency and result size of the vault queries made by the web server, by query.
+ * - {@code obligation_cache_hits_total}, {@code obligation_cache_misses_total} and {@code obligation_cache_hit_ratio}:
+ *   the lookups served by each of the web server's caches.
+ *
+ * Flows are counted from the node's state machine feed, so flows started by other RPC clients and responder flows are
+ * included too.
+ */
+class ObligationMetrics {
+    static final String MEDIA_TYPE = "text/plain; version=0.0.4";
+
+    // Histogram bucket upper bounds. Latencies are in seconds.
+    private static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+    private static final double[] SIZE_BUCKETS = {0, 1, 10, 100, 1_000, 10_000, 100_000};
+
+    private final Counter flowsStarted = new Counter("obligation_flows_started_total",
+            "Flows started on the node.", "flow");
+    private final Counter flowsCompleted = new Counter("obligation_flows_completed_total",
+            "Flows finished on the node, by outcome.", "flow", "outcome");
+    private final Histogram requestSeconds = new Histogram("obligation_http_request_duration_seconds",
+            "REST request latency until the response headers are written.", LATENCY_BUCKETS, "route", "method", "code");
+    private final Histogram vaultQuerySeconds = new Histogram("obligation_vault_query_duration_seconds",
+            "Vault query latency over RPC.", LATENCY_BUCKETS, "query");
+    private final Histogram vaultQueryStates = new Histogram("obligation_vault_query_states",
+            "States returned by each vault query.", SIZE_BUCKETS, "query");
+
+    // Written in this order.
+    private final List<Family> families = ImmutableList.of(
+            flowsStarted,
+            flowsCompleted,
+            new Callback("obligation_flows_in_flight", "gauge",
+                    "Flows running on the node.", this::inFlightCounts, "flow"),
+            requestSeconds,
+            vaultQuerySeconds,
+            vaultQueryStates,
+            new Callback("obligation_cache_hits_total", "counter",
+                    "Lookups served from the cache.", () -> cacheValues(true), "cache"),
+            new Callback("obligation_cache_misses_total", "counter",
+                    "Lookups the cache could not serve.", () -> cacheValues(false), "cache"),
+            new Callback("obligation_cache_hit_ratio", "gauge",
+                    "The share of lookups served from the cache.", this::cacheHitRatios, "cache"));
+
+    // The flow class of each flow running on the node. Guarded by itself.
+    private final Map<StateMachineRunId, String> inFlight = new HashMap<>();
+    private final Map<String, LongSupplier[]> caches = new ConcurrentHashMap<>();
+
+    /** Starts counting the flows on the node. */
+    void trackFlows(CordaRPCOps rpcOps) {
+        final DataFeed<List<StateMachineInfo>, StateMachineUpdate> feed = rpcOps.stateMachinesFeed();
+        synchronized (inFlight) {
+            feed.getSnapshot().forEach(info -> inFlight.put(info.getId(), flowName(info.getFlowLogicClassName())));
+        }
+        feed.getUpdates().subscribe(this::apply);
+    }
+
+    void apply(StateMachineUpdate update) {
+        if (update instanceof StateMachineUpdate.Added) {
+            final String flow = flowName(((StateMachineUpdate.Added) update).getStateMachineInfo().getFlowLogicClassName());
+            synchronized (inFlight) {
+                inFlight.put(update.getId(), flow);
+            }
+            flowsStarted.increment(flow);
+        } else if (update instanceof StateMachineUpdate.Removed) {
+            final String flow;
+            synchronized (inFlight) {
+                flow = inFlight.remove(update.getId());
+            }
+            if (flow != null) {
+                final boolean succeeded = ((StateMachineUpdate.Removed) update).getResult().isSuccess();
+                flowsCompleted.increment(flow, succeeded ? "success" : "failure");
+            }
+        }
+    }
+
+    void recordRequest(String route, String method, int status, long nanos) {
+        requestSeconds.observe(nanos / 1e9, route, method, Integer.toString(status));
+    }
+
+    /** Runs a vault query, recording how long it took and how many states {@code states} says it returned. */
+    <T> T timeVaultQuery(String query, Supplier<T> run, ToLongFunction<T> states) {
+        final long start = System.nanoTime();
+        final T result = run.get();
+        vaultQuerySeconds.observe((System.nanoTime() - start) / 1e9, query);
+        vaultQueryStates.observe(states.applyAsLong(result), query);
+        return result;
+    }
+
+    /** Reports the hits and misses of a cache, replacing any cache registered under the same name. */
+    void registerCache(String cache, LongSupplier hits, LongSupplier misses) {
+        caches.put(cache, new LongSupplier[]{hits, misses});
+    }
+
+    void write(Writer writer) throws IOException {
+        for (Family family : families) {
+            writer.write(String.format("# HELP %s %s\n# TYPE %s %s\n", family.name, family.help, family.name, family.type));
+            family.write(writer);
+        }
+        writer.flush();
+    }
+
+    // Turns net.corda.examples.obligation.flows.IssueObligation$Initiator into IssueObligation.Initiator.
+    static String flowName(String flowLogicClassName) {
+        return flowLogicClassName.substring(flowLogicClassName.lastIndexOf('.') + 1).replace('$', '.');
+    }
+
+    private Map<List<String>, Number> inFlightCounts() {
+        final Map<List<String>, Number> counts = new TreeMap<>(ObligationMetrics::compareLabels);
+        synchronized (inFlight) {
+            inFlight.values().forEach(flow -> counts.merge(ImmutableList.of(flow), 1L, (a, b) -> a.longValue() + b.longValue()));
+        }
+        return counts;
+    }
+
+    private Map<List<String>, Number> cacheValues(boolean hits) {
+        final Map<List<String>, Number> values = new TreeMap<>(ObligationMetrics::compareLabels);
+        caches.forEach((cache, counts) -> values.put(ImmutableList.of(cache), counts[hits ? 0 : 1].getAsLong()));
+        return values;
+    }
+
+    private Map<List<String>, Number> cacheHitRatios() {
+        final Map<List<String>, Number> ratios = new TreeMap<>(ObligationMetrics::compareLabels);
+        caches.forEach((cache, counts) -> {
+            final long hits = counts[0].getAsLong();
+            final long lookups = hits + counts[1].getAsLong();
+            ratios.put(ImmutableList.of(cache), lookups == 0 ? 0.0 : (double) hits / lookups);
+        });
+        return ratios;
+    }
+
+    private static int compareLabels(List<String> a, List<String> b) {
+        return String.join("\u0000", a).compareTo(String.join("\u0000", b));
+    }
+
+    // Writes {name="value",...}, or nothing if there are no labels.
+    private static String labels(List<String> names, List<String> values) {
+        if (names.isEmpty()) {
+            return "";
+        }
+        final StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(names.get(i)).append("=\"").append(escape(values.get(i))).append('"');
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private abstract static class Family {
+        final String name;
+        final String type;
+        final String help;
+        final List<String> labelNames;
+
+        Family(String name, String type, String help, String... labelNames) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.labelNames = ImmutableList.copyOf(labelNames);
+        }
+
+        abstract void write(Writer writer) throws IOException;
+    }
+
+    private static class Counter extends Family {
+        private final ConcurrentMap<List<String>, LongAdder> values = new ConcurrentHashMap<>();
+
+        Counter(String name, String help, String... labelNames) {
+            super(name, "counter", help, labelNames);
+        }
+
+        void increment(String... labelValues) {
+            values.computeIfAbsent(ImmutableList.copyOf(labelValues), k -> new LongAdder()).increment();
+        }
+
+        @Override
+        void write(Writer writer) throws IOException {
+            final Map<List<String>, LongAdder> sorted = new TreeMap<>(ObligationMetrics::compareLabels);
+            sorted.putAll(values);
+            for (Map.Entry<List<String>, LongAdder> entry : sorted.entrySet()) {
+                writer.write(name + labels(labelNames, entry.getKey()) + " " + entry.getValue().sum() + "\n");
+            }
+        }
+    }
+
+    // A counter or gauge whose values are read when the metrics are written.
+    private static class Callback extends Family {
+        private final Supplier<Map<List<String>, Number>> values;
+
+        Callback(String name, String type, String help, Supplier<Map<List<String>, Number>> values, String... labelNames) {
+            super(name, type, help, labelNames);
+            this.values = values;
+        }
+
+        @Override
+        void write(Writer writer) throws IOException {
+            for (Map.Entry<List<String>, Number> entry : values.get().entrySet()) {
+                writer.write(name + labels(labelNames, entry.getKey()) + " " + format(entry.getValue().doubleValue()) + "\n");
+            }
+        }
+    }
+
+    private static class Histogram extends Family {
+        private final double[] buckets;
+        private final ConcurrentMap<List<String>, Series> series = new ConcurrentHashMap<>();
+
+        Histogram(String name, String help, double[] buckets, String... labelNames) {
+            super(name, "histogram", help, labelNames);
+            this.buckets = buckets;
+        }
+
+        void observe(double value, String... labelValues) {
+            series.computeIfAbsent(ImmutableList.copyOf(labelValues), k -> new Series(buckets.length)).observe(buckets, value);
+        }
+
+        @Override
+        void write(Writer writer) throws IOException {
+            final Map<List<String>, Series> sorted = new TreeMap<>(ObligationMetrics::compareLabels);
+            sorted.putAll(series);
+            final List<String> bucketLabelNames = ImmutableList.<String>builder().addAll(labelNames).add("le").build();
+            for (Map.Entry<List<String>, Series> entry : sorted.entrySet()) {
+                final Series values = entry.getValue();
+                // The buckets are cumulative, so each counts every observation up to its bound.
+                long cumulative = 0;
+                for (int i = 0; i <= buckets.length; i++) {
+                    cumulative += values.buckets[i].sum();
+                    final double bound = i < buckets.length ? buckets[i] : Double.POSITIVE_INFINITY;
+                    final List<String> bucketLabels = ImmutableList.<String>builder()
+                            .addAll(entry.getKey()).add(format(bound)).build();
+                    writer.write(name + "_bucket" + labels(bucketLabelNames, bucketLabels) + " " + cumulative + "\n");
+                }
+                final String seriesLabels = labels(labelNames, entry.getKey());
+                writer.write(name + "_sum" + seriesLabels + " " + format(values.sum.sum()) + "\n");
+                writer.write(name + "_count" + seriesLabels + " " + cumulative + "\n");
+            }
+        }
+
+        private static class Series {
+            // One more than the number of bounds, for the observations above the highest bound.
+            final LongAdder[] buckets;
+            final DoubleAdder sum = new DoubleAdder();
+
+            Series(int bounds) {
+                buckets = new LongAdder[bounds + 1];
+                Arrays.setAll(buckets, i -> new LongAdder());
+            }
+
+            void observe(double[] bounds, double value) {
+                int bucket = Arrays.binarySearch(bounds, value);
+                if (bucket < 0) {
+                    bucket = -bucket - 1;
+                }
+                buckets[bucket].increment();
+                sum.add(value);
+            }
+        }
+    }
+}
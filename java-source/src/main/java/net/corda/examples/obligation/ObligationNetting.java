@@ -0,0 +1,114 @@
+package net.corda.examples.obligation;
+
+import net.corda.core.contracts.Amount;
+import net.corda.core.identity.AbstractParty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static net.corda.core.crypto.CryptoUtils.toStringShort;
+
+/**
+ * Multilateral netting of obligations in a single currency.
+ *
+ * Each party's net position is what it is owed less what it owes, counting only the outstanding part of each
+ * obligation. Any set of obligations that leaves every party's net position unchanged is economically equivalent, so
+ * cycles cancel out and chains collapse. {@link #net(List)} replaces the obligations with at most one fewer than the
+ * number of parties with a non-zero position, by repeatedly having the largest debtor pay the largest creditor.
+ *
+ * A party may hold obligations under several confidential identities. The overloads taking a {@code resolve} function
+ * map each lender and borrower to the party whose position it counts towards, usually its well-known identity, so
+ * that a party's confidential obligations net against each other.
+ */
+public class ObligationNetting {
+
+    private ObligationNetting() {
+    }
+
+    /** Returns each party's net position, in the currency's smallest unit. Parties that net to zero are omitted. */
+    public static Map<AbstractParty, Long> netPositions(List<Obligation> obligations) {
+        return netPositions(obligations, Function.identity());
+    }
+
+    /** Returns the net position of each party that a lender or borrower resolves to. */
+    public static Map<AbstractParty, Long> netPositions(
+            List<Obligation> obligations, Function<AbstractParty, ? extends AbstractParty> resolve) {
+        final Map<AbstractParty, Long> positions = new HashMap<>();
+        for (Obligation obligation : obligations) {
+            final long outstanding = obligation.getAmount().getQuantity() - obligation.getPaid().getQuantity();
+            positions.merge(resolve.apply(obligation.getLender()), outstanding, Long::sum);
+            positions.merge(resolve.apply(obligation.getBorrower()), -outstanding, Long::sum);
+        }
+        positions.values().removeIf(position -> position == 0L);
+        return positions;
+    }
+
+    /**
+     * Returns new, unpaid obligations which leave every party with the same net position as the given obligations.
+     * All the obligations must be in the same currency. The result is deterministic for a given set of obligations.
+     */
+    public static List<Obligation> net(List<Obligation> obligations) {
+        return net(obligations, Function.identity());
+    }
+
+    /**
+     * Returns new, unpaid obligations between the resolved parties which leave each of them with the same net position
+     * as the given obligations.
+     */
+    public static List<Obligation> net(
+            List<Obligation> obligations, Function<AbstractParty, ? extends AbstractParty> resolve) {
+        if (obligations.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final Currency currency = obligations.get(0).getAmount().getToken();
+        if (!obligations.stream().allMatch(it -> it.getAmount().getToken().equals(currency))) {
+            throw new IllegalArgumentException("All obligations netted together must be in the same currency.");
+        }
+
+        final Map<AbstractParty, Long> positions = netPositions(obligations, resolve);
+        final List<Position> creditors = sortedPositions(positions, true);
+        final List<Position> debtors = sortedPositions(positions, false);
+
+        final List<Obligation> residuals = new ArrayList<>();
+        int creditorIndex = 0;
+        int debtorIndex = 0;
+        while (creditorIndex < creditors.size() && debtorIndex < debtors.size()) {
+            final Position creditor = creditors.get(creditorIndex);
+            final Position debtor = debtors.get(debtorIndex);
+            final long quantity = Math.min(creditor.remaining, debtor.remaining);
+            residuals.add(new Obligation(new Amount<>(quantity, currency), creditor.party, debtor.party));
+
+            creditor.remaining -= quantity;
+            debtor.remaining -= quantity;
+            if (creditor.remaining == 0) creditorIndex++;
+            if (debtor.remaining == 0) debtorIndex++;
+        }
+        return residuals;
+    }
+
+    // Largest first, with ties broken by key so that every node computes the same result.
+    private static List<Position> sortedPositions(Map<AbstractParty, Long> positions, boolean creditors) {
+        return positions.entrySet().stream()
+                .filter(it -> creditors ? it.getValue() > 0 : it.getValue() < 0)
+                .map(it -> new Position(it.getKey(), Math.abs(it.getValue())))
+                .sorted(Comparator.<Position>comparingLong(it -> it.remaining).reversed()
+                        .thenComparing(it -> toStringShort(it.party.getOwningKey())))
+                .collect(Collectors.toList());
+    }
+
+    private static class Position {
+        private final AbstractParty party;
+        private long remaining;
+
+        Position(AbstractParty party, long remaining) {
+            this.party = party;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -11,7 +11,12 @@ import java.util.Map;
 import java.util.function.Function;
 
 public class ObligationPlugin implements WebServerPluginRegistry {
-    private final List<Function<CordaRPCOps, ?>> webApis = ImmutableList.of(ObligationApi::new);
+    // Shared by the API and the request filter, so that request latencies are served by the metrics end-point.
+    private final ObligationMetrics metrics = new ObligationMetrics();
+
+    private final List<Function<CordaRPCOps, ?>> webApis = ImmutableList.of(
+            rpcOps -> new ObligationApi(rpcOps, metrics),
+            rpcOps -> new RequestMetricsFilter(metrics));
 
     private final Map<String, String> staticServeDirs = ImmutableMap.of(
             "obligation", getClass().getClassLoader().getResource("obligationWeb").toExternalForm()
@@ -29,5 +34,6 @@ public class ObligationPlugin implements WebServerPluginRegistry {
 
     @Override
     public void customizeJSONSerialization(ObjectMapper objectMapper) {
+        ObligationJsonSupport.registerCompactView(objectMapper);
     }
 }
\ No newline at end of file
@@ -0,0 +1,569 @@
+package net.corda.examples.obligation;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.VaultCustomQueryCriteria;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.examples.obligation.schema.ObligationSchemaV1.PersistentObligation;
+import net.corda.finance.contracts.asset.Cash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import rx.Subscription;
+
+import java.lang.reflect.Field;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static java.util.stream.Collectors.toList;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
+
+/**
+ * An in-memory copy of the vault's unconsumed obligations and cash, so that the read end-points don't have to query the
+ * vault over RPC on every request.
+ *
+ * The view is seeded from a snapshot of the vault when it is first read and then kept up to date from vault updates.
+ * The snapshot is read in pages of {@link #SNAPSHOT_PAGE_SIZE} states as of a single instant, so that states consumed
+ * while it is read don't shift the later pages. The amount owed per currency and the cash balances are adjusted as
+ * states are produced and consumed rather than summed on each request. The obligations are kept sorted in each of the
+ * most recently requested orders, and each obligation produced or consumed is added to or removed from those orders.
+ *
+ * Obligations are usually issued to confidential identities, so whether we are the lender of an obligation is decided
+ * by {@code isMe}, which may have to ask the node who a key belongs to. It is asked once per obligation, when the
+ * obligation enters the view and without the view's lock held, and the answer is kept with the obligation. Keys found
+ * to be ours are remembered for as long as the view exists, so later states of the same obligation don't ask again.
+ *
+ * Every {@code obligation.view.checkIntervalSeconds} seconds (300 by default, 0 to turn the check off) the number of
+ * states and the total outstanding per currency are compared with the vault. If they differ the view is re-seeded and
+ * the reset listeners are called, as the updates already passed on no longer add up to the view's contents. The amount
+ * owed is derived from the same states, so it is correct whenever they are.
+ */
+class ObligationView {
+    static final String CHECK_INTERVAL_PROPERTY = "obligation.view.checkIntervalSeconds";
+    static final long DEFAULT_CHECK_INTERVAL_SECONDS = 300;
+
+    static final int SNAPSHOT_PAGE_SIZE = 1000;
+
+    // The number of orders the obligations are kept sorted in at once. The least recently requested is dropped first.
+    private static final int MAX_SORTED_LISTS = 4;
+
+    private static final Logger logger = LoggerFactory.getLogger(ObligationView.class);
+
+    private final CordaRPCOps rpcOps;
+    private final Predicate<AbstractParty> isMe;
+    private final ObligationMetrics metrics;
+    private final List<Consumer<Vault.Update<Obligation>>> obligationListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Vault.Update<Cash.State>>> cashListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> resetListeners = new CopyOnWriteArrayList<>();
+    private final Set<PublicKey> myKeys = ConcurrentHashMap.newKeySet();
+
+    // Serialises seeding, which is done without holding the view's lock.
+    private final Object seedLock = new Object();
+    // Written under seedLock.
+    private volatile boolean started = false;
+
+    // Guarded by this.
+    private final Map<StateRef, Recorded> obligations = new HashMap<>();
+    private final Map<StateRef, StateAndRef<Cash.State>> cash = new LinkedHashMap<>();
+    private final Map<Currency, Long> owed = new LinkedHashMap<>();
+    private final Map<Currency, Long> outstanding = new HashMap<>();
+    private final Map<Currency, Long> cashBalances = new LinkedHashMap<>();
+    private final Map<Sort, NavigableSet<Recorded>> sortedObligations = new LinkedHashMap<Sort, NavigableSet<Recorded>>(
+            MAX_SORTED_LISTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Sort, NavigableSet<Recorded>> eldest) {
+            return size() > MAX_SORTED_LISTS;
+        }
+    };
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    // Incremented on every re-seed, so that updates from an abandoned feed are ignored.
+    private int generation = 0;
+    // Incremented whenever the view changes, so that a consistency check can tell whether it raced with an update.
+    private long version = 0;
+    private long nextSequence = 0;
+    private long sortedListHits = 0;
+    private long sortedListMisses = 0;
+
+    ObligationView(CordaRPCOps rpcOps, Predicate<AbstractParty> isMe, ObligationMetrics metrics) {
+        this.rpcOps = rpcOps;
+        this.isMe = isMe;
+        this.metrics = metrics;
+        metrics.registerCache("sorted-obligations", this::getSortedListHits, this::getSortedListMisses);
+    }
+
+    /** Registers a listener that is called with each obligation update after it has been applied to the view. */
+    void onObligationUpdate(Consumer<Vault.Update<Obligation>> listener) {
+        obligationListeners.add(listener);
+    }
+
+    /** Registers a listener that is called with each cash update after it has been applied to the view. */
+    void onCashUpdate(Consumer<Vault.Update<Cash.State>> listener) {
+        cashListeners.add(listener);
+    }
+
+    /** Registers a listener that is called after the view has been re-seeded because it no longer matched the vault. */
+    void onReset(Runnable listener) {
+        resetListeners.add(listener);
+    }
+
+    /** Returns one page of unconsumed obligations in the given order, along with the total number of obligations. */
+    Page getObligations(int page, int pageSize, Sort sort) {
+        start();
+        synchronized (this) {
+            return getSortedPage(page, pageSize, sort);
+        }
+    }
+
+    // Guarded by this.
+    private Page getSortedPage(int page, int pageSize, Sort sort) {
+        NavigableSet<Recorded> sorted = sortedObligations.get(sort);
+        if (sorted != null) {
+            sortedListHits++;
+        } else {
+            sortedListMisses++;
+            // The sequence breaks any remaining ties, so that no two obligations compare as equal.
+            sorted = new TreeSet<>(comparator(sort).thenComparingLong(recorded -> recorded.sequence));
+            sorted.addAll(obligations.values());
+            sortedObligations.put(sort, sorted);
+        }
+
+        final long from = (long) (page - 1) * pageSize;
+        final List<StateAndRef<Obligation>> states = sorted.stream()
+                .skip(from)
+                .limit(pageSize)
+                .map(recorded -> recorded.state)
+                .collect(toList());
+        return new Page(states, sorted.size());
+    }
+
+    synchronized long getSortedListHits() {
+        return sortedListHits;
+    }
+
+    synchronized long getSortedListMisses() {
+        return sortedListMisses;
+    }
+
+    /**
+     * Returns the total amount outstanding (the amount less what has been paid) on the obligations we are not the
+     * lender of, by currency.
+     */
+    Map<Currency, Long> getOwedPerCurrency() {
+        start();
+        synchronized (this) {
+            return new LinkedHashMap<>(owed);
+        }
+    }
+
+    List<StateAndRef<Cash.State>> getCash() {
+        start();
+        synchronized (this) {
+            return ImmutableList.copyOf(cash.values());
+        }
+    }
+
+    Map<Currency, Amount<Currency>> getCashBalances() {
+        start();
+        synchronized (this) {
+            final Map<Currency, Amount<Currency>> balances = new LinkedHashMap<>();
+            cashBalances.forEach((currency, quantity) -> balances.put(currency, new Amount<>(quantity, currency)));
+            return balances;
+        }
+    }
+
+    Amount<Currency> getCashBalance(Currency currency) {
+        start();
+        synchronized (this) {
+            return new Amount<>(cashBalances.getOrDefault(currency, 0L), currency);
+        }
+    }
+
+    /** Starts tracking the vault, if the view isn't already. Called on first use. */
+    void start() {
+        if (started) {
+            return;
+        }
+        synchronized (seedLock) {
+            if (started) {
+                return;
+            }
+            started = true;
+            seed();
+        }
+
+        final long intervalSeconds = Long.getLong(CHECK_INTERVAL_PROPERTY, DEFAULT_CHECK_INTERVAL_SECONDS);
+        if (intervalSeconds > 0) {
+            final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "obligation-view-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::checkConsistency, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Guarded by seedLock. Replaces the contents of the view with a fresh snapshot of the vault. The snapshot is taken,
+     * and the owner of each obligation found, without holding the view's lock, so reads carry on from the old contents
+     * until the new ones are swapped in. Updates from the old feeds are ignored from the start.
+     */
+    private void seed() {
+        final int seededGeneration;
+        synchronized (this) {
+            subscriptions.forEach(Subscription::unsubscribe);
+            subscriptions.clear();
+            seededGeneration = ++generation;
+        }
+
+        // Only the updates are wanted from the feeds. They are tracked before the snapshot is read, so that nothing
+        // recorded in between is missed, and anything that is in both is only added once.
+        final PageSpecification first = new PageSpecification(DEFAULT_PAGE_NUM, 1);
+        final DataFeed<Vault.Page<Obligation>, Vault.Update<Obligation>> obligationFeed =
+                rpcOps.vaultTrackBy(new VaultQueryCriteria(), first, new Sort(ImmutableList.of()), Obligation.class);
+        final DataFeed<Vault.Page<Cash.State>, Vault.Update<Cash.State>> cashFeed =
+                rpcOps.vaultTrackBy(new VaultQueryCriteria(), first, new Sort(ImmutableList.of()), Cash.State.class);
+
+        // States recorded after this instant arrive as updates. A clock difference between us and the node is caught
+        // by the next consistency check.
+        final Instant asOf = Instant.now();
+        final List<StateAndRef<Obligation>> obligationStates = snapshot("obligation-snapshot-page", asOf, Obligation.class);
+        final Map<StateRef, Boolean> lentByUs = lentByUs(obligationStates);
+        final List<StateAndRef<Cash.State>> cashStates = snapshot("cash-snapshot-page", asOf, Cash.State.class);
+
+        synchronized (this) {
+            obligations.clear();
+            cash.clear();
+            owed.clear();
+            outstanding.clear();
+            cashBalances.clear();
+            sortedObligations.clear();
+            version++;
+            obligationStates.forEach(state -> addObligation(state, lentByUs.get(state.getRef())));
+            cashStates.forEach(this::addCash);
+        }
+
+        // Updates are buffered by the RPC client until they are subscribed to, so none are lost.
+        final Subscription obligationUpdates = obligationFeed.getUpdates().subscribe(update -> apply(seededGeneration, update));
+        final Subscription cashUpdates = cashFeed.getUpdates().subscribe(update -> applyCash(seededGeneration, update));
+        synchronized (this) {
+            subscriptions.add(obligationUpdates);
+            subscriptions.add(cashUpdates);
+        }
+    }
+
+    /**
+     * Reads the states that were unconsumed at the given instant one page at a time. The pages are sorted by recorded
+     * time so that the order in which obligations are added to the view matches the order they were recorded in, and
+     * then by state ref so that the pages don't overlap.
+     */
+    private <T extends ContractState> List<StateAndRef<T>> snapshot(String name, Instant asOf, Class<T> contractStateType) {
+        final QueryCriteria criteria = ObligationExport.unconsumedAt(asOf);
+        final Sort sorting = new Sort(ImmutableList.of(
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.VaultStateAttribute.RECORDED_TIME), Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+
+        final List<StateAndRef<T>> states = new ArrayList<>();
+        int pageNumber = DEFAULT_PAGE_NUM;
+        while (true) {
+            final PageSpecification paging = new PageSpecification(pageNumber, SNAPSHOT_PAGE_SIZE);
+            final List<StateAndRef<T>> page = metrics.timeVaultQuery(
+                    name,
+                    () -> rpcOps.vaultQueryBy(criteria, paging, sorting, contractStateType),
+                    results -> results.getStates().size()).getStates();
+            states.addAll(page);
+            if (page.size() < SNAPSHOT_PAGE_SIZE) {
+                return states;
+            }
+            pageNumber++;
+        }
+    }
+
+    private void apply(int updateGeneration, Vault.Update<Obligation> update) {
+        final Map<StateRef, Boolean> lentByUs = lentByUs(update.getProduced());
+        synchronized (this) {
+            if (updateGeneration != generation) {
+                return;
+            }
+            update.getConsumed().forEach(state -> removeObligation(state.getRef()));
+            update.getProduced().forEach(state -> addObligation(state, lentByUs.get(state.getRef())));
+            version++;
+        }
+        obligationListeners.forEach(listener -> listener.accept(update));
+    }
+
+    // Called without the view's lock held, as finding out who a key belongs to may mean asking the node.
+    private Map<StateRef, Boolean> lentByUs(Collection<StateAndRef<Obligation>> states) {
+        final Map<StateRef, Boolean> lentByUs = new HashMap<>();
+        for (StateAndRef<Obligation> state : states) {
+            final AbstractParty lender = state.getState().getData().getLender();
+            boolean mine = myKeys.contains(lender.getOwningKey());
+            if (!mine && isMe.test(lender)) {
+                myKeys.add(lender.getOwningKey());
+                mine = true;
+            }
+            lentByUs.put(state.getRef(), mine);
+        }
+        return lentByUs;
+    }
+
+    private void applyCash(int updateGeneration, Vault.Update<Cash.State> update) {
+        synchronized (this) {
+            if (updateGeneration != generation) {
+                return;
+            }
+            update.getConsumed().forEach(this::removeCash);
+            update.getProduced().forEach(this::addCash);
+            version++;
+        }
+        cashListeners.forEach(listener -> listener.accept(update));
+    }
+
+    // Guarded by this.
+    private void addObligation(StateAndRef<Obligation> state, boolean lentByUs) {
+        if (obligations.containsKey(state.getRef())) {
+            return;
+        }
+        final Recorded recorded = new Recorded(state, nextSequence++, lentByUs);
+        obligations.put(state.getRef(), recorded);
+        sortedObligations.values().forEach(sorted -> sorted.add(recorded));
+        adjustTotals(recorded, 1);
+    }
+
+    // Guarded by this.
+    private void removeObligation(StateRef ref) {
+        final Recorded recorded = obligations.remove(ref);
+        if (recorded != null) {
+            sortedObligations.values().forEach(sorted -> sorted.remove(recorded));
+            adjustTotals(recorded, -1);
+        }
+    }
+
+    // Guarded by this.
+    private void adjustTotals(Recorded recorded, int sign) {
+        final Obligation obligation = recorded.obligation();
+        final Currency currency = obligation.getAmount().getToken();
+        final long quantity = obligation.getAmount().getQuantity() - obligation.getPaid().getQuantity();
+        adjustTotal(outstanding, currency, sign * quantity);
+        if (!recorded.lentByUs) {
+            adjustTotal(owed, currency, sign * quantity);
+        }
+    }
+
+    /** Returns how much of the obligation's currency we owe on it: what is outstanding, unless we are the lender. */
+    static long owedQuantity(Obligation obligation, Predicate<AbstractParty> isMe) {
+        if (isMe.test(obligation.getLender())) {
+            return 0;
+        }
+        return obligation.getAmount().getQuantity() - obligation.getPaid().getQuantity();
+    }
+
+    /** Totals {@link #owedQuantity} by currency, leaving out the currencies nothing is owed in. */
+    static Map<Currency, Long> owedPerCurrency(Collection<Obligation> obligations, Predicate<AbstractParty> isMe) {
+        final Map<Currency, Long> owed = new LinkedHashMap<>();
+        obligations.forEach(obligation ->
+                adjustTotal(owed, obligation.getAmount().getToken(), owedQuantity(obligation, isMe)));
+        return owed;
+    }
+
+    // Guarded by this.
+    private void addCash(StateAndRef<Cash.State> state) {
+        if (cash.putIfAbsent(state.getRef(), state) == null) {
+            adjustCashBalance(state.getState().getData(), 1);
+        }
+    }
+
+    // Guarded by this.
+    private void removeCash(StateAndRef<Cash.State> state) {
+        if (cash.remove(state.getRef()) != null) {
+            adjustCashBalance(state.getState().getData(), -1);
+        }
+    }
+
+    // Guarded by this.
+    private void adjustCashBalance(Cash.State state, int sign) {
+        adjustTotal(cashBalances, state.getAmount().getToken().getProduct(), sign * state.getAmount().getQuantity());
+    }
+
+    // Totals that reach zero are removed, as the vault returns no row for a currency without any states.
+    private static void adjustTotal(Map<Currency, Long> totals, Currency currency, long quantity) {
+        if (quantity == 0) {
+            return;
+        }
+        totals.merge(currency, quantity, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    /**
+     * Compares the view with the vault and re-seeds it if they differ. The check is skipped if the view changes while
+     * the vault is being queried, as the two can't then be compared.
+     */
+    void checkConsistency() {
+        try {
+            final long versionBefore;
+            final int obligationCount;
+            final int cashCount;
+            final Map<Currency, Long> expectedOutstanding;
+            synchronized (this) {
+                versionBefore = version;
+                obligationCount = obligations.size();
+                cashCount = cash.size();
+                expectedOutstanding = new HashMap<>(outstanding);
+            }
+
+            final long vaultObligationCount = countUnconsumed(Obligation.class);
+            final long vaultCashCount = countUnconsumed(Cash.State.class);
+            final Map<Currency, Long> vaultOutstanding = queryOutstandingPerCurrency();
+
+            synchronized (this) {
+                if (version != versionBefore) {
+                    return;
+                }
+                if (vaultObligationCount == obligationCount && vaultCashCount == cashCount
+                        && vaultOutstanding.equals(expectedOutstanding)) {
+                    return;
+                }
+                logger.warn("The obligation view no longer matches the vault, re-seeding it. Obligations: {} in the view, "
+                                + "{} in the vault. Cash states: {} in the view, {} in the vault.",
+                        obligationCount, vaultObligationCount, cashCount, vaultCashCount);
+            }
+            synchronized (seedLock) {
+                seed();
+            }
+            resetListeners.forEach(Runnable::run);
+        } catch (Exception e) {
+            logger.warn("Could not check the obligation view against the vault.", e);
+        }
+    }
+
+    private <T extends ContractState> long countUnconsumed(Class<T> contractStateType) {
+        return metrics.timeVaultQuery(
+                "count-" + contractStateType.getSimpleName(),
+                () -> rpcOps.vaultQueryBy(new VaultQueryCriteria(), new PageSpecification(DEFAULT_PAGE_NUM, 1),
+                        new Sort(ImmutableList.of()), contractStateType),
+                page -> page.getStates().size()).getTotalStatesAvailable();
+    }
+
+    /**
+     * Sums what is outstanding on every obligation in the node's database, so only one row per currency is returned.
+     * The node can't tell over RPC which confidential keys are ours, so this is compared with the same total over all
+     * the obligations in the view rather than with the amount owed.
+     */
+    private Map<Currency, Long> queryOutstandingPerCurrency() {
+        final Field outstanding = getField("outstanding", PersistentObligation.class);
+        final Field currency = getField("currency", PersistentObligation.class);
+        final QueryCriteria criteria = new VaultCustomQueryCriteria(Builder.sum(outstanding, ImmutableList.of(currency)));
+
+        // Each group is returned as a (sum, currency) pair.
+        final List<Object> sums = metrics.timeVaultQuery(
+                "outstanding-per-currency",
+                () -> rpcOps.vaultQueryByCriteria(criteria, Obligation.class),
+                page -> page.getOtherResults().size() / 2).getOtherResults();
+        final Map<Currency, Long> totals = new HashMap<>();
+        for (int i = 0; i + 1 < sums.size(); i += 2) {
+            final long total = (Long) sums.get(i);
+            if (total != 0) {
+                totals.put(Currency.getInstance((String) sums.get(i + 1)), total);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Converts a vault {@link Sort} into the equivalent in-memory ordering. Obligations recorded earlier come first in
+     * recorded time order, as they were added to the view first.
+     */
+    static Comparator<Recorded> comparator(Sort sort) {
+        Comparator<Recorded> comparator = (a, b) -> 0;
+        for (Sort.SortColumn column : sort.getColumns()) {
+            Comparator<Recorded> next = columnComparator(column.getSortAttribute());
+            if (column.getDirection() == Sort.Direction.DESC) {
+                next = next.reversed();
+            }
+            comparator = comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    private static Comparator<Recorded> columnComparator(SortAttribute attribute) {
+        if (attribute instanceof SortAttribute.Standard) {
+            final Sort.Attribute standard = ((SortAttribute.Standard) attribute).getAttribute();
+            if (standard == Sort.VaultStateAttribute.RECORDED_TIME) {
+                return Comparator.comparingLong(recorded -> recorded.sequence);
+            } else if (standard == Sort.CommonStateAttribute.STATE_REF_TXN_ID) {
+                return Comparator.comparing(recorded -> recorded.state.getRef().getTxhash().toString());
+            } else if (standard == Sort.CommonStateAttribute.STATE_REF_INDEX) {
+                return Comparator.comparingInt(recorded -> recorded.state.getRef().getIndex());
+            }
+        } else if (attribute instanceof SortAttribute.Custom) {
+            switch (((SortAttribute.Custom) attribute).getEntityStateColumnName()) {
+                case "amount":
+                    return Comparator.comparingLong(recorded -> recorded.obligation().getAmount().getQuantity());
+                case "paid":
+                    return Comparator.comparingLong(recorded -> recorded.obligation().getPaid().getQuantity());
+                case "outstanding":
+                    return Comparator.comparingLong(recorded ->
+                            recorded.obligation().getAmount().getQuantity() - recorded.obligation().getPaid().getQuantity());
+                case "currency":
+                    return Comparator.comparing(recorded -> recorded.obligation().getAmount().getToken().getCurrencyCode());
+            }
+        }
+        throw new IllegalArgumentException(String.format("Cannot sort obligations in memory by %s.", attribute));
+    }
+
+    /** An obligation in the view, along with the order in which it was added and whether we are its lender. */
+    static class Recorded {
+        final StateAndRef<Obligation> state;
+        final long sequence;
+        final boolean lentByUs;
+
+        Recorded(StateAndRef<Obligation> state, long sequence, boolean lentByUs) {
+            this.state = state;
+            this.sequence = sequence;
+            this.lentByUs = lentByUs;
+        }
+
+        Obligation obligation() {
+            return state.getState().getData();
+        }
+    }
+
+    static class Page {
+        final List<StateAndRef<Obligation>> states;
+        final long totalStatesAvailable;
+
+        Page(List<StateAndRef<Obligation>> states, long totalStatesAvailable) {
+            this.states = states;
+            this.totalStatesAvailable = totalStatesAvailable;
+        }
+    }
+}
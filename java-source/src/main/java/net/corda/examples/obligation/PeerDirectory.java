@@ -0,0 +1,91 @@
+package net.corda.examples.obligation;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.NodeInfo;
+import net.corda.core.node.services.NetworkMapCache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The organisation names of the other nodes on the network, kept in memory so that the peers end-point doesn't fetch
+ * the whole network map on every request.
+ *
+ * The directory is seeded from the network map feed's snapshot and then updated from the feed's changes. Our own node
+ * and the notaries are left out. The notaries are re-read whenever the network map changes.
+ */
+class PeerDirectory {
+    private final Party myIdentity;
+
+    // Guarded by this.
+    private final Map<Party, NodeInfo> nodes = new HashMap<>();
+    private Set<Party> notaries = ImmutableSet.of();
+
+    // The peers' names, sorted without regard to case. Rebuilt whenever the nodes or notaries change.
+    private volatile List<String> names = ImmutableList.of();
+
+    PeerDirectory(Party myIdentity) {
+        this.myIdentity = myIdentity;
+    }
+
+    /** Seeds the directory from the node's network map and keeps it up to date as the network map changes. */
+    void track(CordaRPCOps rpcOps) {
+        final DataFeed<List<NodeInfo>, NetworkMapCache.MapChange> feed = rpcOps.networkMapFeed();
+        seed(feed.getSnapshot(), rpcOps.notaryIdentities());
+        feed.getUpdates().subscribe(change -> apply(change, rpcOps.notaryIdentities()));
+    }
+
+    /** Returns the names of the peers that start with the prefix, ignoring case, or all the peers if it is null. */
+    List<String> search(String prefix) {
+        final List<String> peers = names;
+        if (prefix == null || prefix.isEmpty()) {
+            return peers;
+        }
+        final String lowerCasePrefix = prefix.toLowerCase(Locale.ROOT);
+        return peers.stream()
+                .filter(name -> name.toLowerCase(Locale.ROOT).startsWith(lowerCasePrefix))
+                .collect(toList());
+    }
+
+    synchronized void seed(Collection<NodeInfo> snapshot, Collection<Party> latestNotaries) {
+        nodes.clear();
+        snapshot.forEach(this::put);
+        notaries = ImmutableSet.copyOf(latestNotaries);
+        rebuild();
+    }
+
+    synchronized void apply(NetworkMapCache.MapChange change, Collection<Party> latestNotaries) {
+        if (change instanceof NetworkMapCache.MapChange.Removed) {
+            nodes.remove(change.getNode().getLegalIdentities().get(0));
+        } else {
+            put(change.getNode());
+        }
+        notaries = ImmutableSet.copyOf(latestNotaries);
+        rebuild();
+    }
+
+    // Guarded by this.
+    private void put(NodeInfo node) {
+        nodes.put(node.getLegalIdentities().get(0), node);
+    }
+
+    // Guarded by this.
+    private void rebuild() {
+        names = ImmutableList.copyOf(nodes.values().stream()
+                .filter(node -> node.getLegalIdentities().stream()
+                        .noneMatch(identity -> identity.equals(myIdentity) || notaries.contains(identity)))
+                .map(node -> node.getLegalIdentities().get(0).getName().getOrganisation())
+                .sorted(String.CASE_INSENSITIVE_ORDER)
+                .collect(toList()));
+    }
+}
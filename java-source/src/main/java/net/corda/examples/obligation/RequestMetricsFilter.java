@@ -0,0 +1,64 @@
+package net.corda.examples.obligation;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import java.lang.reflect.Method;
+
+/**
+ * Records the latency of each REST request with {@link ObligationMetrics}, labelled with the route template that
+ * matched it (e.g. {@code obligation/flows/{id}/progress}) rather than the request path, so that path parameters don't
+ * create a new series per request.
+ *
+ * Asynchronous requests are timed until they are resumed. Streamed responses are timed until the headers are written,
+ * not until the stream ends.
+ */
+public class RequestMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String START_PROPERTY = RequestMetricsFilter.class.getName() + ".start";
+
+    private final ObligationMetrics metrics;
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    RequestMetricsFilter(ObligationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        final Object start = request.getProperty(START_PROPERTY);
+        if (start == null) {
+            return;
+        }
+        metrics.recordRequest(route(), request.getMethod(), response.getStatus(), System.nanoTime() - (Long) start);
+    }
+
+    // Requests that didn't match a resource method share one route, whatever their path.
+    private String route() {
+        final Method method = resourceInfo == null ? null : resourceInfo.getResourceMethod();
+        if (method == null) {
+            return "unmatched";
+        }
+        return join(resourceInfo.getResourceClass().getAnnotation(Path.class), method.getAnnotation(Path.class));
+    }
+
+    private static String join(Path classPath, Path methodPath) {
+        final String prefix = classPath == null ? "" : trim(classPath.value());
+        final String suffix = methodPath == null ? "" : trim(methodPath.value());
+        return prefix.isEmpty() || suffix.isEmpty() ? prefix + suffix : prefix + "/" + suffix;
+    }
+
+    private static String trim(String path) {
+        return path.replaceAll("^/+|/+$", "");
+    }
+}
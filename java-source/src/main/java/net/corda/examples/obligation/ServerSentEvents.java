@@ -0,0 +1,73 @@
+package net.corda.examples.obligation;
+
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes events in the text/event-stream format used by server-sent events.
+ *
+ * Streams are Jersey {@link ChunkedOutput}s written to as events happen, so no request thread is held while a client
+ * is connected.
+ */
+class ServerSentEvents {
+    static final String MEDIA_TYPE = "text/event-stream";
+
+    // A comment is sent this often while a stream is idle, so idle connections aren't closed by proxies.
+    static final long KEEP_ALIVE_MILLIS = 15_000;
+
+    // A comment, sent while a stream is idle.
+    static final String KEEP_ALIVE = ": keep-alive\n\n";
+
+    // Shared by the streams to send their keep-alives, so that no request thread waits on an idle stream.
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "server-sent-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ServerSentEvents() {
+    }
+
+    /** Formats one event. Multi-line data is sent as one data field per line. */
+    static String format(String event, String data) {
+        final StringBuilder builder = new StringBuilder("event: ").append(event).append('\n');
+        for (String line : data.split("\n", -1)) {
+            builder.append("data: ").append(line).append('\n');
+        }
+        return builder.append('\n').toString();
+    }
+
+    /** Runs the task every {@link #KEEP_ALIVE_MILLIS} on the shared keep-alive thread. */
+    static void everyKeepAlive(Runnable task) {
+        scheduler.scheduleWithFixedDelay(task, KEEP_ALIVE_MILLIS, KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a chunk to a client's stream, closing the stream if the write fails because the client has gone. Returns
+     * whether the chunk was written.
+     */
+    static boolean send(ChunkedOutput<String> output, String chunk) {
+        if (output.isClosed()) {
+            return false;
+        }
+        try {
+            output.write(chunk);
+            return true;
+        } catch (IOException e) {
+            close(output);
+            return false;
+        }
+    }
+
+    static void close(ChunkedOutput<String> output) {
+        try {
+            output.close();
+        } catch (IOException e) {
+            // The client has already gone.
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package net.corda.examples.obligation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import net.corda.client.jackson.JacksonSupport;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.ContractState;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.messaging.CordaRPCOps;
+import net.corda.core.node.services.Vault;
+import net.corda.finance.contracts.asset.Cash;
+import org.glassfish.jersey.server.ChunkedOutput;
+
+import java.io.UncheckedIOException;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Pushes changes to the vault's obligations and cash to web clients as server-sent events, so that dashboards don't
+ * have to re-query the vault to stay up to date.
+ *
+ * However many clients are connected, the updates all come from the web server's {@link ObligationView}, which tracks
+ * the vault with one feed for obligations and one for cash. Each obligation update is sent as an "obligations" event
+ * with the produced states and the references of the consumed states. Each cash update is sent as a "cash" event with
+ * the produced and consumed states and the new balance of every currency the update touched, as maintained by the
+ * view, so no further vault queries are needed.
+ *
+ * If the view finds it has drifted from the vault and re-seeds itself, a "reset" event is sent. Clients should then
+ * re-fetch the obligations and cash balances, as the events they have applied no longer add up to the vault.
+ *
+ * Events are written to each client's {@link ChunkedOutput} from a single thread, in the order they happened, so no
+ * request thread is held while a client is connected. At most {@code obligation.api.maxVaultUpdateClients} clients
+ * (256 by default) are connected at once.
+ */
+class VaultUpdateFeed {
+    static final String MAX_CLIENTS_PROPERTY = "obligation.api.maxVaultUpdateClients";
+    static final int DEFAULT_MAX_CLIENTS = 256;
+
+    private final ObligationView view;
+    private final ObjectMapper mapper;
+    private final int maxClients = Integer.getInteger(MAX_CLIENTS_PROPERTY, DEFAULT_MAX_CLIENTS);
+    private final Set<ChunkedOutput<String>> clients = ConcurrentHashMap.newKeySet();
+    // Writes the events to the clients, so that a slow client doesn't hold up the vault feeds.
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "vault-update-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    VaultUpdateFeed(CordaRPCOps rpcOps, ObligationView view) {
+        this.view = view;
+        this.mapper = JacksonSupport.createDefaultMapper(rpcOps);
+        view.onObligationUpdate(update -> publish("obligations", delta(update)));
+        view.onCashUpdate(this::onCashUpdate);
+        view.onReset(() -> publish("reset", ImmutableMap.of()));
+        ServerSentEvents.everyKeepAlive(() -> writer.execute(() -> sendToAll(ServerSentEvents.KEEP_ALIVE)));
+    }
+
+    /** Returns a new client's stream of vault updates, or null if too many clients are already connected. */
+    ChunkedOutput<String> open() {
+        final ChunkedOutput<String> output = new ChunkedOutput<>(String.class);
+        return connect(output) ? output : null;
+    }
+
+    /** Starts sending vault updates to the output, unless too many clients are already connected. */
+    boolean connect(ChunkedOutput<String> output) {
+        synchronized (clients) {
+            clients.removeIf(ChunkedOutput::isClosed);
+            if (clients.size() >= maxClients) {
+                return false;
+            }
+            clients.add(output);
+        }
+        view.start();
+        return true;
+    }
+
+    private void onCashUpdate(Vault.Update<Cash.State> update) {
+        final Map<String, Object> event = delta(update);
+        final Set<Currency> touched = new LinkedHashSet<>();
+        update.getConsumed().forEach(state -> touched.add(currency(state)));
+        update.getProduced().forEach(state -> touched.add(currency(state)));
+        final Map<Currency, Amount<Currency>> balances = new LinkedHashMap<>();
+        touched.forEach(currency -> balances.put(currency, view.getCashBalance(currency)));
+        event.put("balances", balances);
+        publish("cash", event);
+    }
+
+    private static Currency currency(StateAndRef<Cash.State> state) {
+        return state.getState().getData().getAmount().getToken().getProduct();
+    }
+
+    private static <T extends ContractState> Map<String, Object> delta(Vault.Update<T> update) {
+        final List<StateRef> consumed = update.getConsumed().stream().map(StateAndRef::getRef).collect(Collectors.toList());
+        final Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("produced", ImmutableList.copyOf(update.getProduced()));
+        delta.put("consumed", consumed);
+        return delta;
+    }
+
+    private void publish(String event, Map<String, ?> data) {
+        final String json;
+        try {
+            json = mapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        final String chunk = ServerSentEvents.format(event, json);
+        writer.execute(() -> sendToAll(chunk));
+    }
+
+    // Clients that have disconnected are dropped.
+    private void sendToAll(String chunk) {
+        clients.removeIf(client -> !ServerSentEvents.send(client, chunk));
+    }
+}
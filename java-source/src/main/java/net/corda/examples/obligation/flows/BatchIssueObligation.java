@@ -0,0 +1,223 @@
+package net.corda.examples.obligation.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import net.corda.confidential.SwapIdentitiesFlow;
+import net.corda.core.contracts.Amount;
+import net.corda.core.crypto.TransactionSignature;
+import net.corda.core.flows.*;
+import net.corda.core.identity.AnonymousParty;
+import net.corda.core.identity.Party;
+import net.corda.core.serialization.CordaSerializable;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+
+import java.security.PublicKey;
+import java.security.SignatureException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Issues many obligations, possibly to different lenders, in a single transaction. Each lender is sent the
+ * transaction before any of their signatures are awaited, so the lenders sign in parallel and the whole batch costs a
+ * single notarisation.
+ */
+public class BatchIssueObligation {
+    @CordaSerializable
+    public static class IssueRequest {
+        private final Amount<Currency> amount;
+        private final Party lender;
+
+        public IssueRequest(Amount<Currency> amount, Party lender) {
+            this.amount = amount;
+            this.lender = lender;
+        }
+
+        public Amount<Currency> getAmount() {
+            return amount;
+        }
+
+        public Party getLender() {
+            return lender;
+        }
+    }
+
+    @InitiatingFlow
+    @StartableByRPC
+    public static class Initiator extends ObligationBaseFlow {
+        private final List<IssueRequest> requests;
+        private final Boolean anonymous;
+
+        private final Step INITIALISING = new Step("Performing initial steps.");
+        private final Step BUILDING = new Step("Building transaction.");
+        private final Step SIGNING = new Step("Signing transaction.");
+        private final Step COLLECTING = new Step("Collecting lender signatures.");
+        private final Step FINALISING = new Step("Finalising transaction.") {
+            @Override public ProgressTracker childProgressTracker() {
+                return FinalityFlow.Companion.tracker();
+            }
+        };
+
+        private final ProgressTracker progressTracker = new ProgressTracker(
+                INITIALISING, BUILDING, SIGNING, COLLECTING, FINALISING
+        );
+
+        public Initiator(List<IssueRequest> requests, Boolean anonymous) {
+            this.requests = requests;
+            this.anonymous = anonymous;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            if (requests.isEmpty()) {
+                throw new FlowException("At least one obligation must be issued.");
+            }
+
+            // Step 1. Initialisation. Confidential identities are swapped once per lender, not once per obligation.
+            progressTracker.setCurrentStep(INITIALISING);
+            final Set<Party> lenders = new LinkedHashSet<>();
+            for (IssueRequest request : requests) {
+                lenders.add(request.getLender());
+            }
+            final List<Obligation> obligations = createObligations(lenders);
+
+            // Step 2. Building.
+            progressTracker.setCurrentStep(BUILDING);
+            final Set<PublicKey> requiredSigners = new LinkedHashSet<>();
+            final Set<PublicKey> ourSigningKeys = new LinkedHashSet<>();
+            for (Obligation obligation : obligations) {
+                requiredSigners.addAll(obligation.getParticipantKeys());
+                ourSigningKeys.add(obligation.getBorrower().getOwningKey());
+            }
+
+            final Party notary = selectNotary(obligations.get(0).getLinearId());
+            final TransactionBuilder utx = new TransactionBuilder(notary)
+                    .addCommand(new ObligationContract.Commands.BatchIssue(), ImmutableList.copyOf(requiredSigners))
+                    .setTimeWindow(getServiceHub().getClock().instant(), Duration.ofSeconds(30));
+            for (Obligation obligation : obligations) {
+                utx.addOutputState(obligation, ObligationContract.OBLIGATION_CONTRACT_ID);
+            }
+
+            // Step 3. Verify and sign the transaction.
+            progressTracker.setCurrentStep(SIGNING);
+            utx.verify(getServiceHub());
+            final SignedTransaction ptx = getServiceHub().signInitialTransaction(utx, ImmutableList.copyOf(ourSigningKeys));
+
+            // Step 4. Send the transaction to every lender before waiting for any of their signatures.
+            progressTracker.setCurrentStep(COLLECTING);
+            final List<FlowSession> sessions = new ArrayList<>();
+            for (Party lender : lenders) {
+                final FlowSession session = initiateFlow(lender);
+                session.send(ptx);
+                sessions.add(session);
+            }
+
+            final Set<PublicKey> lenderKeys = new HashSet<>(requiredSigners);
+            lenderKeys.removeAll(ourSigningKeys);
+            final List<TransactionSignature> signatures = new ArrayList<>();
+            for (FlowSession session : sessions) {
+                final List<TransactionSignature> lenderSignatures = session.receive(List.class).unwrap(sigs -> {
+                    final List<TransactionSignature> checked = new ArrayList<>();
+                    for (Object sig : sigs) {
+                        final TransactionSignature signature = (TransactionSignature) sig;
+                        if (!lenderKeys.contains(signature.getBy())) {
+                            throw new FlowException("Received a signature from an unexpected key.");
+                        }
+                        checked.add(signature);
+                    }
+                    return checked;
+                });
+                signatures.addAll(lenderSignatures);
+            }
+
+            // Check every signature is valid and that no lender's signature is missing.
+            final SignedTransaction stx = ptx.withAdditionalSignatures(signatures);
+            try {
+                stx.verifySignaturesExcept(notary.getOwningKey());
+            } catch (SignatureException e) {
+                throw new FlowException("Lender signatures are missing or invalid.", e);
+            }
+
+            // Step 5. Finalise the transaction.
+            progressTracker.setCurrentStep(FINALISING);
+            final Instant finalisationStarted = getServiceHub().getClock().instant();
+            final SignedTransaction ftx = subFlow(new FinalityFlow(stx, FINALISING.childProgressTracker()));
+            recordNotarisation(notary, finalisationStarted);
+            return ftx;
+        }
+
+        @Suspendable
+        private List<Obligation> createObligations(Set<Party> lenders) throws FlowException {
+            final Map<Party, AnonymousParty> anonymousLenders = new HashMap<>();
+            final Map<Party, AnonymousParty> anonymousMes = new HashMap<>();
+            if (anonymous) {
+                for (Party lender : lenders) {
+                    final HashMap<Party, AnonymousParty> txKeys = subFlow(new SwapIdentitiesFlow(lender));
+                    if (!txKeys.containsKey(getOurIdentity())) {
+                        throw new FlowException("Couldn't create our conf. identity.");
+                    } else if (!txKeys.containsKey(lender)) {
+                        throw new FlowException("Couldn't create lender's conf. identity.");
+                    }
+                    anonymousLenders.put(lender, txKeys.get(lender));
+                    anonymousMes.put(lender, txKeys.get(getOurIdentity()));
+                }
+            }
+
+            final List<Obligation> obligations = new ArrayList<>();
+            for (IssueRequest request : requests) {
+                if (anonymous) {
+                    final Party lender = request.getLender();
+                    obligations.add(new Obligation(request.getAmount(), anonymousLenders.get(lender), anonymousMes.get(lender)));
+                } else {
+                    obligations.add(new Obligation(request.getAmount(), request.getLender(), getOurIdentity()));
+                }
+            }
+            return obligations;
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession otherFlow;
+
+        public Responder(FlowSession otherFlow) {
+            this.otherFlow = otherFlow;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            final SignedTransaction stx = otherFlow.receive(SignedTransaction.class).unwrap(tx -> {
+                if (!(tx.getTx().getCommands().size() == 1
+                        && tx.getTx().getCommands().get(0).getValue() instanceof ObligationContract.Commands.BatchIssue)) {
+                    throw new FlowException("Expected a batch obligation issuance.");
+                }
+                // A batch issuance has no inputs, so it can be verified without resolving any dependencies.
+                try {
+                    tx.verify(getServiceHub(), false);
+                } catch (SignatureException e) {
+                    throw new FlowException("Invalid borrower signature.", e);
+                }
+                return tx;
+            });
+
+            final List<TransactionSignature> signatures = new ArrayList<>();
+            for (PublicKey key : getServiceHub().getKeyManagementService().filterMyKeys(stx.getTx().getRequiredSigningKeys())) {
+                signatures.add(getServiceHub().createSignature(stx, key));
+            }
+            otherFlow.send(signatures);
+            return waitForLedgerCommit(stx.getId());
+        }
+    }
+}
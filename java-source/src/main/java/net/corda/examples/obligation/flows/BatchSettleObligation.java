@@ -0,0 +1,221 @@
+package net.corda.examples.obligation.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.corda.confidential.IdentitySyncFlow;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.PartyAndAmount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.*;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.serialization.CordaSerializable;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+import net.corda.examples.obligation.flows.ObligationBaseFlow.SignTxFlowNoChecking;
+import net.corda.finance.contracts.asset.Cash;
+
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Pays down many obligations owed to the same lender in a single transaction. The cash is selected once and each
+ * lender identity on the obligations receives a single cash output for the sum of its payments.
+ */
+public class BatchSettleObligation {
+    @CordaSerializable
+    public static class SettleRequest {
+        private final UniqueIdentifier linearId;
+        private final Amount<Currency> amount;
+
+        public SettleRequest(UniqueIdentifier linearId, Amount<Currency> amount) {
+            this.linearId = linearId;
+            this.amount = amount;
+        }
+
+        public UniqueIdentifier getLinearId() {
+            return linearId;
+        }
+
+        public Amount<Currency> getAmount() {
+            return amount;
+        }
+    }
+
+    @InitiatingFlow
+    @StartableByRPC
+    public static class Initiator extends ObligationBaseFlow {
+        private final List<SettleRequest> requests;
+
+        private final Step PREPARATION = new Step("Obtaining IOUs from vault.");
+        private final Step BUILDING = new Step("Building and verifying transaction.");
+        private final Step SIGNING = new Step("Signing transaction.");
+        private final Step COLLECTING = new Step("Collecting counterparty signature.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return CollectSignaturesFlow.Companion.tracker();
+            }
+        };
+        private final Step FINALISING = new Step("Finalising transaction.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return FinalityFlow.Companion.tracker();
+            }
+        };
+
+        private final ProgressTracker progressTracker = new ProgressTracker(
+                PREPARATION, BUILDING, SIGNING, COLLECTING, FINALISING
+        );
+
+        public Initiator(List<SettleRequest> requests) {
+            this.requests = requests;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // Stage 1. Retrieve the obligations to settle from the vault in a single query.
+            progressTracker.setCurrentStep(PREPARATION);
+            if (requests.isEmpty()) {
+                throw new FlowException("At least one obligation must be settled.");
+            }
+            final Map<UniqueIdentifier, Amount<Currency>> payments = new LinkedHashMap<>();
+            for (SettleRequest request : requests) {
+                if (payments.put(request.getLinearId(), request.getAmount()) != null) {
+                    throw new FlowException(String.format("Obligation %s is settled more than once.", request.getLinearId()));
+                }
+            }
+            final List<StateAndRef<Obligation>> obligationsToSettle = getObligationsByLinearIds(new ArrayList<>(payments.keySet()));
+
+            // Stage 2. Check we are the borrower on every obligation and that they are all owed to one lender, in one
+            // currency and on one notary.
+            final Party notary = obligationsToSettle.get(0).getState().getNotary();
+            final Currency currency = requests.get(0).getAmount().getToken();
+            Party lenderIdentity = null;
+            for (StateAndRef<Obligation> obligationToSettle : obligationsToSettle) {
+                final Obligation obligation = obligationToSettle.getState().getData();
+                if (!resolveIdentity(obligation.getBorrower()).equals(getOurIdentity())) {
+                    throw new FlowException("Settle Obligation flow must be initiated by the borrower.");
+                }
+                final Party lender = resolveIdentity(obligation.getLender());
+                if (lenderIdentity == null) {
+                    lenderIdentity = lender;
+                } else if (!lenderIdentity.equals(lender)) {
+                    throw new FlowException("All obligations settled together must be owed to the same lender.");
+                }
+                if (!obligation.getAmount().getToken().equals(currency)) {
+                    throw new FlowException("All obligations settled together must be in the same currency.");
+                }
+                if (!obligationToSettle.getState().getNotary().equals(notary)) {
+                    throw new FlowException("All obligations settled together must be on the same notary.");
+                }
+            }
+
+            // Stage 3. Check each payment and that we hold enough cash on the notary to make all of them.
+            long total = 0;
+            for (StateAndRef<Obligation> obligationToSettle : obligationsToSettle) {
+                final Obligation obligation = obligationToSettle.getState().getData();
+                final Amount<Currency> payment = payments.get(obligation.getLinearId());
+                final Amount<Currency> amountLeftToSettle = obligation.getAmount().minus(obligation.getPaid());
+                if (payment.getQuantity() <= 0 || !payment.getToken().equals(currency)) {
+                    throw new FlowException(String.format("Invalid payment %s for obligation %s.", payment, obligation.getLinearId()));
+                } else if (amountLeftToSettle.getQuantity() < payment.getQuantity()) {
+                    throw new FlowException(String.format(
+                            "There's only %s left to settle on %s but you pledged %s.", amountLeftToSettle, obligation.getLinearId(), payment));
+                }
+                total += payment.getQuantity();
+            }
+            final Amount<Currency> totalPayment = new Amount<>(total, currency);
+            final Amount<Currency> cashBalance = getCashBalanceOnNotary(currency, notary);
+            if (cashBalance.getQuantity() < totalPayment.getQuantity()) {
+                throw new FlowException(String.format(
+                        "Borrower has only %s on %s but needs %s to settle.", cashBalance, notary.getName(), totalPayment));
+            }
+
+            // Stage 4. Add the obligations, the outputs for the partially settled ones and the settle command.
+            progressTracker.setCurrentStep(BUILDING);
+            final TransactionBuilder builder = new TransactionBuilder(notary);
+            final Set<PublicKey> requiredSigners = new LinkedHashSet<>();
+            final Set<PublicKey> borrowerKeys = new LinkedHashSet<>();
+            final Map<AbstractParty, Long> paymentsPerLender = new LinkedHashMap<>();
+            for (StateAndRef<Obligation> obligationToSettle : obligationsToSettle) {
+                final Obligation obligation = obligationToSettle.getState().getData();
+                final Amount<Currency> payment = payments.get(obligation.getLinearId());
+                builder.addInputState(obligationToSettle);
+                if (obligation.getAmount().minus(obligation.getPaid()).getQuantity() > payment.getQuantity()) {
+                    builder.addOutputState(obligation.pay(payment), ObligationContract.OBLIGATION_CONTRACT_ID);
+                }
+                requiredSigners.addAll(obligation.getParticipantKeys());
+                borrowerKeys.add(obligation.getBorrower().getOwningKey());
+                paymentsPerLender.merge(obligation.getLender(), payment.getQuantity(), Long::sum);
+            }
+            builder.addCommand(new ObligationContract.Commands.BatchSettle(), ImmutableList.copyOf(requiredSigners));
+
+            // Stage 5. Select the cash once, paying each lender identity in a single output.
+            final List<PartyAndAmount<Currency>> cashPayments = paymentsPerLender.entrySet().stream()
+                    .map(it -> new PartyAndAmount<>(it.getKey(), new Amount<>(it.getValue(), currency)))
+                    .collect(Collectors.toList());
+            final List<PublicKey> cashSigningKeys = Cash.generateSpend(
+                    getServiceHub(),
+                    builder,
+                    cashPayments,
+                    ImmutableSet.of()).getSecond();
+
+            // Stage 6. Verify and sign the transaction.
+            progressTracker.setCurrentStep(SIGNING);
+            builder.verify(getServiceHub());
+            final List<PublicKey> signingKeys = new ImmutableList.Builder<PublicKey>()
+                    .addAll(cashSigningKeys)
+                    .addAll(borrowerKeys)
+                    .build();
+            final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, signingKeys);
+
+            // Stage 7. Get the lender's signature.
+            progressTracker.setCurrentStep(COLLECTING);
+            final FlowSession session = initiateFlow(lenderIdentity);
+            subFlow(new IdentitySyncFlow.Send(session, ptx.getTx()));
+            final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
+                    ptx,
+                    ImmutableSet.of(session),
+                    signingKeys,
+                    COLLECTING.childProgressTracker()));
+
+            // Stage 8. Finalise the transaction.
+            progressTracker.setCurrentStep(FINALISING);
+            final Instant finalisationStarted = getServiceHub().getClock().instant();
+            final SignedTransaction ftx = subFlow(new FinalityFlow(stx, FINALISING.childProgressTracker()));
+            recordNotarisation(notary, finalisationStarted);
+            return ftx;
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession otherFlow;
+
+        public Responder(FlowSession otherFlow) {
+            this.otherFlow = otherFlow;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            subFlow(new IdentitySyncFlow.Receive(otherFlow));
+            SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
+            return waitForLedgerCommit(stx.getId());
+        }
+    }
+}
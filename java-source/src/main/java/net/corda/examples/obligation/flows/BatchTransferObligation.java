@@ -0,0 +1,181 @@
+package net.corda.examples.obligation.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.corda.confidential.IdentitySyncFlow;
+import net.corda.confidential.SwapIdentitiesFlow;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.*;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.AnonymousParty;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+import net.corda.examples.obligation.flows.ObligationBaseFlow.SignTxFlowNoChecking;
+
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID;
+
+/**
+ * Moves a portfolio of obligations to a new lender atomically, in a single transaction. Identities are synced with,
+ * and signatures collected from, each involved borrower once rather than once per obligation.
+ */
+public class BatchTransferObligation {
+
+    @StartableByRPC
+    @InitiatingFlow
+    public static class Initiator extends ObligationBaseFlow {
+        private final List<UniqueIdentifier> linearIds;
+        private final Party newLender;
+        private final Boolean anonymous;
+
+        private final Step PREPARATION = new Step("Obtaining IOUs from vault.");
+        private final Step BUILDING = new Step("Building and verifying transaction.");
+        private final Step SIGNING = new Step("Signing transaction.");
+        private final Step SYNCING = new Step("Syncing identities.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return IdentitySyncFlow.Send.Companion.tracker();
+            }
+        };
+        private final Step COLLECTING = new Step("Collecting counterparty signatures.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return CollectSignaturesFlow.Companion.tracker();
+            }
+        };
+        private final Step FINALISING = new Step("Finalising transaction.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return FinalityFlow.Companion.tracker();
+            }
+        };
+
+        private final ProgressTracker progressTracker = new ProgressTracker(
+                PREPARATION, BUILDING, SIGNING, SYNCING, COLLECTING, FINALISING
+        );
+
+        public Initiator(List<UniqueIdentifier> linearIds, Party newLender, Boolean anonymous) {
+            this.linearIds = linearIds;
+            this.newLender = newLender;
+            this.anonymous = anonymous;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // Stage 1. Retrieve the obligations specified by linearIds from the vault in a single query.
+            progressTracker.setCurrentStep(PREPARATION);
+            if (linearIds.isEmpty()) {
+                throw new FlowException("At least one obligation must be transferred.");
+            }
+            final List<StateAndRef<Obligation>> obligationsToTransfer = getObligationsByLinearIds(linearIds);
+
+            // Stage 2. This flow can only be initiated by the current lender of every obligation, and every obligation
+            // must be controlled by the same notary.
+            final Party notary = obligationsToTransfer.get(0).getState().getNotary();
+            for (StateAndRef<Obligation> obligation : obligationsToTransfer) {
+                if (!getOurIdentity().equals(resolveIdentity(obligation.getState().getData().getLender()))) {
+                    throw new FlowException("Obligation transfer can only be initiated by the lender.");
+                }
+                if (!notary.equals(obligation.getState().getNotary())) {
+                    throw new FlowException("All obligations in a batch transfer must be on the same notary.");
+                }
+            }
+
+            // Stage 3. Create the new obligation states. A single confidential identity is used for the new lender.
+            progressTracker.setCurrentStep(BUILDING);
+            final AbstractParty newLenderIdentity = createNewLenderIdentity();
+            final TransactionBuilder builder = new TransactionBuilder(notary);
+            final Set<PublicKey> signerKeys = new LinkedHashSet<>();
+            final Set<PublicKey> ourSigningKeys = new LinkedHashSet<>();
+            final Set<Party> borrowers = new LinkedHashSet<>();
+            for (StateAndRef<Obligation> obligationToTransfer : obligationsToTransfer) {
+                final Obligation inputObligation = obligationToTransfer.getState().getData();
+                builder.addInputState(obligationToTransfer);
+                builder.addOutputState(inputObligation.withNewLender(newLenderIdentity), OBLIGATION_CONTRACT_ID);
+                signerKeys.addAll(inputObligation.getParticipantKeys());
+                ourSigningKeys.add(inputObligation.getLender().getOwningKey());
+                borrowers.add(resolveIdentity(inputObligation.getBorrower()));
+            }
+            signerKeys.add(newLenderIdentity.getOwningKey());
+
+            // Stage 4. Add the batch transfer command.
+            builder.addCommand(new ObligationContract.Commands.BatchTransfer(), ImmutableList.copyOf(signerKeys));
+
+            // Stage 5. Verify and sign the transaction.
+            progressTracker.setCurrentStep(SIGNING);
+            builder.verify(getServiceHub());
+            final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, ImmutableList.copyOf(ourSigningKeys));
+
+            // Stage 6. Send any keys and certificates so the signers can verify each other's identity. There is one
+            // session per borrower, plus the new lender, however many obligations they are party to.
+            progressTracker.setCurrentStep(SYNCING);
+            final Set<Party> counterparties = new LinkedHashSet<>(borrowers);
+            counterparties.add(newLender);
+            final Set<FlowSession> sessions = new LinkedHashSet<>();
+            for (Party party : counterparties) {
+                sessions.add(initiateFlow(party));
+            }
+            subFlow(new IdentitySyncFlow.Send(sessions, ptx.getTx(), SYNCING.childProgressTracker()));
+
+            // Stage 7. Collect signatures from the borrowers and the new lender.
+            progressTracker.setCurrentStep(COLLECTING);
+            final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
+                    ptx,
+                    sessions,
+                    ImmutableList.copyOf(ourSigningKeys),
+                    COLLECTING.childProgressTracker()));
+
+            // Stage 8. Notarise and record the transaction in our vaults.
+            progressTracker.setCurrentStep(FINALISING);
+            return subFlow(new FinalityFlow(stx, ImmutableSet.of(getOurIdentity()), FINALISING.childProgressTracker()));
+        }
+
+        @Suspendable
+        private AbstractParty createNewLenderIdentity() throws FlowException {
+            if (anonymous) {
+                final HashMap<Party, AnonymousParty> txKeys = subFlow(new SwapIdentitiesFlow(newLender));
+                if (!txKeys.containsKey(newLender)) {
+                    throw new FlowException("Couldn't get lender's conf. identity.");
+                }
+                return txKeys.get(newLender);
+            } else {
+                return newLender;
+            }
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession otherFlow;
+
+        public Responder(FlowSession otherFlow) {
+            this.otherFlow = otherFlow;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            subFlow(new IdentitySyncFlow.Receive(otherFlow));
+            SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
+            return waitForLedgerCommit(stx.getId());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package net.corda.examples.obligation.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.corda.confidential.IdentitySyncFlow;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+import net.corda.examples.obligation.ObligationNetting;
+import net.corda.examples.obligation.flows.ObligationBaseFlow.SignNetTxFlow;
+import net.corda.examples.obligation.schema.ObligationSchemaV1;
+import net.corda.examples.obligation.services.IdentityCacheService;
+
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
+import static net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID;
+
+/**
+ * Closes out the obligations in one currency between us and a counterparty, in both directions, leaving a single
+ * residual obligation from whichever side owed more. No cash moves.
+ *
+ * As with {@link NetObligations}, confidential identities are resolved to the parties they belong to and the residual is
+ * between our well-known identities. Obligations on different notaries cannot be consumed together, so only those on
+ * the notary with the most obligations between us, of those with obligations in both directions, are netted.
+ *
+ * Each run closes out at most {@code maxInputs} obligations, taken alternately from each direction, and the vault is
+ * read a page at a time until one notary has that many. A run can be repeated to close out the rest.
+ */
+public class BilateralNetObligations {
+
+    @StartableByRPC
+    @InitiatingFlow
+    public static class Initiator extends ObligationBaseFlow {
+        public static final int DEFAULT_MAX_INPUTS = 100;
+
+        private final Party counterparty;
+        private final Currency currency;
+        private final int maxInputs;
+
+        private final Step PREPARATION = new Step("Obtaining IOUs from vault.");
+        private final Step BUILDING = new Step("Building and verifying transaction.");
+        private final Step SIGNING = new Step("Signing transaction.");
+        private final Step SYNCING = new Step("Syncing identities.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return IdentitySyncFlow.Send.Companion.tracker();
+            }
+        };
+        private final Step COLLECTING = new Step("Collecting counterparty signature.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return CollectSignaturesFlow.Companion.tracker();
+            }
+        };
+        private final Step FINALISING = new Step("Finalising transaction.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return FinalityFlow.Companion.tracker();
+            }
+        };
+
+        private final ProgressTracker progressTracker = new ProgressTracker(
+                PREPARATION, BUILDING, SIGNING, SYNCING, COLLECTING, FINALISING
+        );
+
+        public Initiator(Party counterparty, Currency currency) {
+            this(counterparty, currency, DEFAULT_MAX_INPUTS);
+        }
+
+        public Initiator(Party counterparty, Currency currency, int maxInputs) {
+            this.counterparty = counterparty;
+            this.currency = currency;
+            this.maxInputs = maxInputs;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // Stage 1. Retrieve the obligations in each direction.
+            progressTracker.setCurrentStep(PREPARATION);
+            if (counterparty.equals(getOurIdentity())) {
+                throw new FlowException("Cannot net obligations with ourselves.");
+            }
+            if (maxInputs < 2) {
+                throw new FlowException("At least two obligations must be netted at a time.");
+            }
+            final List<StateAndRef<Obligation>> toNet = getObligationsWithCounterparty();
+            if (toNet.isEmpty()) {
+                throw new FlowException(String.format(
+                        "There must be %s obligations in both directions on one notary to net with %s.", currency, counterparty));
+            }
+            final Party notary = toNet.get(0).getState().getNotary();
+
+            // Stage 2. Consume the obligations between us and create the residual, if the two sides don't cancel out.
+            progressTracker.setCurrentStep(BUILDING);
+            final List<Obligation> inputObligations = new ArrayList<>();
+            final TransactionBuilder builder = new TransactionBuilder(notary);
+            for (StateAndRef<Obligation> state : toNet) {
+                builder.addInputState(state);
+                inputObligations.add(state.getState().getData());
+            }
+            final Set<PublicKey> signerKeys = new LinkedHashSet<>();
+            inputObligations.forEach(it -> signerKeys.addAll(it.getParticipantKeys()));
+            for (Obligation residual : ObligationNetting.net(inputObligations, this::resolveIdentity)) {
+                builder.addOutputState(residual, OBLIGATION_CONTRACT_ID);
+                signerKeys.addAll(residual.getParticipantKeys());
+            }
+            builder.addCommand(new ObligationContract.Commands.Net(), ImmutableList.copyOf(signerKeys));
+
+            // Stage 3. Verify and sign the transaction.
+            progressTracker.setCurrentStep(SIGNING);
+            builder.verify(getServiceHub());
+            final List<PublicKey> ourKeys = ImmutableList.copyOf(
+                    getServiceHub().getKeyManagementService().filterMyKeys(signerKeys));
+            final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, ourKeys);
+
+            // Stage 4. Get the counterparty's signature.
+            progressTracker.setCurrentStep(SYNCING);
+            final FlowSession session = initiateFlow(counterparty);
+            subFlow(new IdentitySyncFlow.Send(ImmutableSet.of(session), ptx.getTx(), SYNCING.childProgressTracker()));
+
+            progressTracker.setCurrentStep(COLLECTING);
+            final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
+                    ptx,
+                    ImmutableSet.of(session),
+                    ourKeys,
+                    COLLECTING.childProgressTracker()));
+
+            // Stage 5. Notarise and record the transaction in our vaults.
+            progressTracker.setCurrentStep(FINALISING);
+            final Instant notarisationStarted = getServiceHub().getClock().instant();
+            final SignedTransaction ftx = subFlow(new FinalityFlow(stx, ImmutableSet.of(getOurIdentity())));
+            recordNotarisation(notary, notarisationStarted);
+            return ftx;
+        }
+
+        // Our vault only has obligations we are a party to, under any of our identities, so the counterparty's are
+        // found by resolving each one's lender and borrower rather than by querying on a key. The vault is read no
+        // further once a notary has maxInputs obligations between us, in both directions.
+        private List<StateAndRef<Obligation>> getObligationsWithCounterparty() {
+            final QueryCriteria criteria = new QueryCriteria.VaultCustomQueryCriteria(Builder.equal(
+                    getField("currency", ObligationSchemaV1.PersistentObligation.class), currency.getCurrencyCode()));
+
+            final IdentityCacheService identities = getServiceHub().cordaService(IdentityCacheService.class);
+            final Map<Party, List<StateAndRef<Obligation>>> owedToUs = new LinkedHashMap<>();
+            final Map<Party, List<StateAndRef<Obligation>>> owedByUs = new LinkedHashMap<>();
+            forEachObligationPage(criteria, page -> {
+                for (StateAndRef<Obligation> state : page) {
+                    final Obligation obligation = state.getState().getData();
+                    final Party lender = identities.wellKnownPartyFromAnonymous(obligation.getLender());
+                    final Party borrower = identities.wellKnownPartyFromAnonymous(obligation.getBorrower());
+                    final Party notary = state.getState().getNotary();
+                    if (getOurIdentity().equals(lender) && counterparty.equals(borrower)) {
+                        owedToUs.computeIfAbsent(notary, it -> new ArrayList<>()).add(state);
+                    } else if (counterparty.equals(lender) && getOurIdentity().equals(borrower)) {
+                        owedByUs.computeIfAbsent(notary, it -> new ArrayList<>()).add(state);
+                    } else {
+                        continue;
+                    }
+                    final List<StateAndRef<Obligation>> toUs = owedToUs.getOrDefault(notary, ImmutableList.of());
+                    final List<StateAndRef<Obligation>> byUs = owedByUs.getOrDefault(notary, ImmutableList.of());
+                    if (!toUs.isEmpty() && !byUs.isEmpty() && toUs.size() + byUs.size() >= maxInputs) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+
+            List<StateAndRef<Obligation>> toNet = new ArrayList<>();
+            for (Map.Entry<Party, List<StateAndRef<Obligation>>> entry : owedToUs.entrySet()) {
+                final List<StateAndRef<Obligation>> opposite = owedByUs.get(entry.getKey());
+                if (opposite != null && entry.getValue().size() + opposite.size() > toNet.size()) {
+                    toNet = alternate(entry.getValue(), opposite);
+                }
+            }
+            return toNet;
+        }
+
+        // Takes up to maxInputs obligations from the two lists in turn, so that both directions are netted.
+        private List<StateAndRef<Obligation>> alternate(List<StateAndRef<Obligation>> first, List<StateAndRef<Obligation>> second) {
+            final List<StateAndRef<Obligation>> taken = new ArrayList<>();
+            for (int i = 0; taken.size() < maxInputs && (i < first.size() || i < second.size()); i++) {
+                if (i < first.size()) {
+                    taken.add(first.get(i));
+                }
+                if (i < second.size() && taken.size() < maxInputs) {
+                    taken.add(second.get(i));
+                }
+            }
+            return taken;
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession otherFlow;
+
+        public Responder(FlowSession otherFlow) {
+            this.otherFlow = otherFlow;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            subFlow(new IdentitySyncFlow.Receive(otherFlow));
+            SignedTransaction stx = subFlow(new SignNetTxFlow(otherFlow, SignTransactionFlow.Companion.tracker()));
+            return waitForLedgerCommit(stx.getId());
+        }
+    }
+}
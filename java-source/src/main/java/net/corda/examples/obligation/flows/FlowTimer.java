@@ -0,0 +1,69 @@
+package net.corda.examples.obligation.flows;
+
+import net.corda.core.node.ServiceHub;
+import net.corda.examples.obligation.services.FlowMetricsService;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Times a flow and each of its progress steps, and records the results with the {@link FlowMetricsService}.
+ *
+ * A step lasts from when it is entered until the next step is entered or the flow finishes. Times are taken from the
+ * node's clock, and only the step label and start times are held, so a timer can be checkpointed with its flow.
+ */
+class FlowTimer {
+    // The steps of the responder flows, which don't have a progress tracker of their own.
+    static final String SYNCING_IDENTITIES = "Syncing identities.";
+    static final String SIGNING = "Signing transaction.";
+    static final String WAITING_FOR_COMMIT = "Waiting for ledger commit.";
+
+    private final String flow;
+    private Instant flowStarted = null;
+    private String step = null;
+    private Instant stepStarted = null;
+
+    /** Names the metrics after the flow class, for example {@code IssueObligation.Initiator}. */
+    FlowTimer(Class<?> flowClass) {
+        final Class<?> enclosing = flowClass.getEnclosingClass();
+        this.flow = enclosing == null
+                ? flowClass.getSimpleName()
+                : enclosing.getSimpleName() + "." + flowClass.getSimpleName();
+    }
+
+    void enterStep(ServiceHub serviceHub, String label) {
+        final Instant now = serviceHub.getClock().instant();
+        if (flowStarted == null) {
+            flowStarted = now;
+        }
+        if (step != null) {
+            metrics(serviceHub).recordStep(flow, step, Duration.between(stepStarted, now));
+        }
+        step = label;
+        stepStarted = now;
+    }
+
+    <T> T succeeded(ServiceHub serviceHub, T result) {
+        if (step != null) {
+            final Instant now = serviceHub.getClock().instant();
+            final FlowMetricsService metrics = metrics(serviceHub);
+            metrics.recordStep(flow, step, Duration.between(stepStarted, now));
+            metrics.recordSuccess(flow, Duration.between(flowStarted, now));
+            step = null;
+        }
+        return result;
+    }
+
+    void failed(ServiceHub serviceHub) {
+        final FlowMetricsService metrics = metrics(serviceHub);
+        if (step != null) {
+            metrics.recordStepFailure(flow, step);
+            step = null;
+        }
+        metrics.recordFailure(flow);
+    }
+
+    private static FlowMetricsService metrics(ServiceHub serviceHub) {
+        return serviceHub.cordaService(FlowMetricsService.class);
+    }
+}
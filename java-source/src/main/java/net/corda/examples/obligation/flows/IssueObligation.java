@@ -18,6 +18,7 @@ import net.corda.examples.obligation.flows.ObligationBaseFlow.SignTxFlowNoChecki
 
 import java.security.PublicKey;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.List;
@@ -31,7 +32,7 @@ public class IssueObligation {
         private final Boolean anonymous;
 
         private final Step INITIALISING = new Step("Performing initial steps.");
-        private final Step BUILDING = new Step("Performing initial steps.");
+        private final Step BUILDING = new Step("Building transaction.");
         private final Step SIGNING = new Step("Signing transaction.");
         private final Step COLLECTING = new Step("Collecting counterparty signature.") {
             @Override public ProgressTracker childProgressTracker() {
@@ -62,26 +63,38 @@ public class IssueObligation {
         @Suspendable
         @Override
         public SignedTransaction call() throws FlowException {
+            try {
+                return timer.succeeded(getServiceHub(), issue());
+            } catch (FlowException | RuntimeException e) {
+                timer.failed(getServiceHub());
+                throw e;
+            }
+        }
+
+        @Suspendable
+        private SignedTransaction issue() throws FlowException {
             // Step 1. Initialisation.
-            progressTracker.setCurrentStep(INITIALISING);
+            enterStep(INITIALISING);
             final Obligation obligation = createObligation();
             final PublicKey ourSigningKey = obligation.getBorrower().getOwningKey();
 
             // Step 2. Building.
-            progressTracker.setCurrentStep(BUILDING);
+            enterStep(BUILDING);
             final List<PublicKey> requiredSigners = obligation.getParticipantKeys();
 
-            final TransactionBuilder utx = new TransactionBuilder(getFirstNotary())
+            final Party notary = selectNotary(obligation.getLinearId());
+
+            final TransactionBuilder utx = new TransactionBuilder(notary)
                     .addOutputState(obligation, ObligationContract.OBLIGATION_CONTRACT_ID)
                     .addCommand(new ObligationContract.Commands.Issue(), requiredSigners)
                     .setTimeWindow(getServiceHub().getClock().instant(), Duration.ofSeconds(30));
 
             // Step 3. Sign the transaction.
-            progressTracker.setCurrentStep(SIGNING);
+            enterStep(SIGNING);
             final SignedTransaction ptx = getServiceHub().signInitialTransaction(utx, ourSigningKey);
 
             // Step 4. Get the counter-party signature.
-            progressTracker.setCurrentStep(COLLECTING);
+            enterStep(COLLECTING);
             final FlowSession lenderFlow = initiateFlow(lender);
             final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
                     ptx,
@@ -91,8 +104,11 @@ public class IssueObligation {
             );
 
             // Step 5. Finalise the transaction.
-            progressTracker.setCurrentStep(FINALISING);
-            return subFlow(new FinalityFlow(stx, FINALISING.childProgressTracker()));
+            enterStep(FINALISING);
+            final Instant finalisationStarted = getServiceHub().getClock().instant();
+            final SignedTransaction ftx = subFlow(new FinalityFlow(stx, FINALISING.childProgressTracker()));
+            recordNotarisation(notary, finalisationStarted);
+            return ftx;
         }
 
         @Suspendable
@@ -121,6 +137,7 @@ public class IssueObligation {
     @InitiatedBy(Initiator.class)
     public static class Responder extends FlowLogic<SignedTransaction> {
         private final FlowSession otherFlow;
+        private final FlowTimer timer = new FlowTimer(getClass());
 
         public Responder(FlowSession otherFlow) {
             this.otherFlow = otherFlow;
@@ -129,8 +146,15 @@ public class IssueObligation {
         @Suspendable
         @Override
         public SignedTransaction call() throws FlowException {
-            final SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
-            return waitForLedgerCommit(stx.getId());
+            try {
+                timer.enterStep(getServiceHub(), FlowTimer.SIGNING);
+                final SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
+                timer.enterStep(getServiceHub(), FlowTimer.WAITING_FOR_COMMIT);
+                return timer.succeeded(getServiceHub(), waitForLedgerCommit(stx.getId()));
+            } catch (FlowException | RuntimeException e) {
+                timer.failed(getServiceHub());
+                throw e;
+            }
         }
     }
 }
\ No newline at end of file
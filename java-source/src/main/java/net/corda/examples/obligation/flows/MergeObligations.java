@@ -0,0 +1,212 @@
+package net.corda.examples.obligation.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.corda.confidential.IdentitySyncFlow;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.*;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+import net.corda.examples.obligation.flows.ObligationBaseFlow.SignTxFlowNoChecking;
+import net.corda.examples.obligation.services.IdentityCacheService;
+
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID;
+
+/**
+ * Compresses the vault by merging obligations between the same lender and borrower, in the same currency and on the
+ * same notary, into a single obligation whose amount and paid are the sums of those merged.
+ *
+ * Each run merges at most {@code maxInputs} obligations from the largest such group, so a run can be repeated, for
+ * example by {@link net.corda.examples.obligation.services.ObligationCompactionService}, until the vault is compact.
+ * The vault is read a page at a time, and no further once a group has {@code maxInputs} obligations.
+ * Obligations between confidential identities are grouped by the well-known party behind them, and the merged
+ * obligation keeps the confidential identities of the first obligation in the group.
+ *
+ * Runs started on both sides at once would race to consume the same obligations, so scheduled runs should set
+ * {@code onlyAsBorrower} and leave merging to the borrower.
+ */
+public class MergeObligations {
+
+    @StartableByRPC
+    @StartableByService
+    @InitiatingFlow
+    public static class Initiator extends ObligationBaseFlow {
+        private final int maxInputs;
+        private final boolean onlyAsBorrower;
+
+        private final Step PREPARATION = new Step("Obtaining IOUs from vault.");
+        private final Step BUILDING = new Step("Building and verifying transaction.");
+        private final Step SIGNING = new Step("Signing transaction.");
+        private final Step SYNCING = new Step("Syncing identities.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return IdentitySyncFlow.Send.Companion.tracker();
+            }
+        };
+        private final Step COLLECTING = new Step("Collecting counterparty signature.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return CollectSignaturesFlow.Companion.tracker();
+            }
+        };
+        private final Step FINALISING = new Step("Finalising transaction.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return FinalityFlow.Companion.tracker();
+            }
+        };
+
+        private final ProgressTracker progressTracker = new ProgressTracker(
+                PREPARATION, BUILDING, SIGNING, SYNCING, COLLECTING, FINALISING
+        );
+
+        public Initiator(int maxInputs) {
+            this(maxInputs, false);
+        }
+
+        public Initiator(int maxInputs, boolean onlyAsBorrower) {
+            this.maxInputs = maxInputs;
+            this.onlyAsBorrower = onlyAsBorrower;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // Stage 1. Find the largest group of obligations that can be merged.
+            progressTracker.setCurrentStep(PREPARATION);
+            if (maxInputs < 2) {
+                throw new FlowException("At least two obligations must be merged at a time.");
+            }
+            final List<StateAndRef<Obligation>> group = getLargestMergeableGroup();
+            if (group.size() < 2) {
+                throw new FlowException("There are no obligations to merge.");
+            }
+            final List<StateAndRef<Obligation>> toMerge = group.subList(0, Math.min(group.size(), maxInputs));
+            final Party notary = toMerge.get(0).getState().getNotary();
+            final Obligation first = toMerge.get(0).getState().getData();
+            final Party lender = resolveIdentity(first.getLender());
+            final Party counterparty = lender.equals(getOurIdentity()) ? resolveIdentity(first.getBorrower()) : lender;
+
+            // Stage 2. Consume the obligations and create the merged obligation.
+            progressTracker.setCurrentStep(BUILDING);
+            final TransactionBuilder builder = new TransactionBuilder(notary);
+            final Set<PublicKey> signerKeys = new LinkedHashSet<>();
+            long amount = 0;
+            long paid = 0;
+            for (StateAndRef<Obligation> state : toMerge) {
+                final Obligation obligation = state.getState().getData();
+                builder.addInputState(state);
+                signerKeys.addAll(obligation.getParticipantKeys());
+                amount += obligation.getAmount().getQuantity();
+                paid += obligation.getPaid().getQuantity();
+            }
+            final Obligation merged = new Obligation(
+                    new Amount<>(amount, first.getAmount().getToken()),
+                    first.getLender(),
+                    first.getBorrower(),
+                    new Amount<>(paid, first.getAmount().getToken()));
+            builder.addOutputState(merged, OBLIGATION_CONTRACT_ID);
+            builder.addCommand(new ObligationContract.Commands.Merge(), ImmutableList.copyOf(signerKeys));
+
+            // Stage 3. Verify and sign the transaction with each of our keys on the merged obligations.
+            progressTracker.setCurrentStep(SIGNING);
+            builder.verify(getServiceHub());
+            final List<PublicKey> ourSigningKeys = ImmutableList.copyOf(
+                    getServiceHub().getKeyManagementService().filterMyKeys(signerKeys));
+            final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, ourSigningKeys);
+
+            // Stage 4. Get the counterparty's signatures.
+            progressTracker.setCurrentStep(SYNCING);
+            final FlowSession session = initiateFlow(counterparty);
+            subFlow(new IdentitySyncFlow.Send(ImmutableSet.of(session), ptx.getTx(), SYNCING.childProgressTracker()));
+
+            progressTracker.setCurrentStep(COLLECTING);
+            final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
+                    ptx,
+                    ImmutableSet.of(session),
+                    ourSigningKeys,
+                    COLLECTING.childProgressTracker()));
+
+            // Stage 5. Notarise and record the transaction in our vaults.
+            progressTracker.setCurrentStep(FINALISING);
+            final Instant notarisationStarted = getServiceHub().getClock().instant();
+            final SignedTransaction ftx = subFlow(new FinalityFlow(stx, ImmutableSet.of(getOurIdentity())));
+            recordNotarisation(notary, notarisationStarted);
+            return ftx;
+        }
+
+        // Groups the unconsumed obligations by lender, borrower, currency and notary. Obligations whose identities
+        // can't be resolved, or which we aren't party to (or aren't the borrower on, if onlyAsBorrower), are skipped.
+        // Confidential identities are grouped by the party behind them, which the vault's key hash columns can't do,
+        // so the grouping is done here, reading no further once a group is full.
+        private List<StateAndRef<Obligation>> getLargestMergeableGroup() {
+            final IdentityCacheService identities = getServiceHub().cordaService(IdentityCacheService.class);
+            final Map<List<Object>, List<StateAndRef<Obligation>>> groups = new LinkedHashMap<>();
+            forEachObligationPage(new QueryCriteria.VaultQueryCriteria(), page -> {
+                for (StateAndRef<Obligation> state : page) {
+                    final Obligation obligation = state.getState().getData();
+                    final Party lender = identities.wellKnownPartyFromAnonymous(obligation.getLender());
+                    final Party borrower = identities.wellKnownPartyFromAnonymous(obligation.getBorrower());
+                    if (lender == null || borrower == null || lender.equals(borrower)) {
+                        continue;
+                    }
+                    if (!borrower.equals(getOurIdentity()) && (onlyAsBorrower || !lender.equals(getOurIdentity()))) {
+                        continue;
+                    }
+                    final List<Object> key = Arrays.asList(
+                            lender, borrower, obligation.getAmount().getToken(), state.getState().getNotary());
+                    final List<StateAndRef<Obligation>> group = groups.computeIfAbsent(key, it -> new ArrayList<>());
+                    group.add(state);
+                    if (group.size() >= maxInputs) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            return groups.values().stream()
+                    .max(Comparator.comparingInt(List::size))
+                    .orElseGet(ArrayList::new);
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession otherFlow;
+
+        public Responder(FlowSession otherFlow) {
+            this.otherFlow = otherFlow;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            subFlow(new IdentitySyncFlow.Receive(otherFlow));
+            SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
+            return waitForLedgerCommit(stx.getId());
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package net.corda.examples.obligation.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.corda.confidential.IdentitySyncFlow;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.flows.*;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.vault.Builder;
+import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+import net.corda.examples.obligation.ObligationNetting;
+import net.corda.examples.obligation.flows.ObligationBaseFlow.SignNetTxFlow;
+import net.corda.examples.obligation.schema.ObligationSchemaV1;
+import net.corda.examples.obligation.services.IdentityCacheService;
+
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.getField;
+import static net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID;
+
+/**
+ * Nets the obligations in our vault in one currency down to the fewest obligations that leave every party's position
+ * unchanged, without moving any cash. See {@link ObligationNetting}.
+ *
+ * The obligation graph is the part of the network that our vault can see, i.e. every obligation we are the lender or
+ * borrower on. Confidential identities are resolved to the parties they belong to, so a party's position counts all of
+ * its keys and the residuals are between well-known parties. Obligations whose parties we can't resolve are left out.
+ * Obligations on different notaries cannot be consumed together, so only those on the notary with the most candidates
+ * are netted in one run.
+ *
+ * Each run nets at most {@code maxInputs} obligations, so that the transaction stays a manageable size, and the vault
+ * is read a page at a time until one notary has that many candidates. A run can be repeated to net the rest.
+ */
+public class NetObligations {
+
+    @StartableByRPC
+    @InitiatingFlow
+    public static class Initiator extends ObligationBaseFlow {
+        public static final int DEFAULT_MAX_INPUTS = 100;
+
+        private final Currency currency;
+        private final int maxInputs;
+
+        private final Step PREPARATION = new Step("Obtaining IOUs from vault.");
+        private final Step NETTING = new Step("Computing net positions.");
+        private final Step BUILDING = new Step("Building and verifying transaction.");
+        private final Step SIGNING = new Step("Signing transaction.");
+        private final Step SYNCING = new Step("Syncing identities.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return IdentitySyncFlow.Send.Companion.tracker();
+            }
+        };
+        private final Step COLLECTING = new Step("Collecting counterparty signatures.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return CollectSignaturesFlow.Companion.tracker();
+            }
+        };
+        private final Step FINALISING = new Step("Finalising transaction.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return FinalityFlow.Companion.tracker();
+            }
+        };
+
+        private final ProgressTracker progressTracker = new ProgressTracker(
+                PREPARATION, NETTING, BUILDING, SIGNING, SYNCING, COLLECTING, FINALISING
+        );
+
+        public Initiator(Currency currency) {
+            this(currency, DEFAULT_MAX_INPUTS);
+        }
+
+        public Initiator(Currency currency, int maxInputs) {
+            this.currency = currency;
+            this.maxInputs = maxInputs;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // Stage 1. Retrieve the unconsumed obligations in the currency between parties we can identify, grouped by
+            // notary.
+            progressTracker.setCurrentStep(PREPARATION);
+            if (maxInputs < 2) {
+                throw new FlowException("At least two obligations must be netted at a time.");
+            }
+            final List<StateAndRef<Obligation>> candidates = getNettableObligations();
+            if (candidates.size() < 2) {
+                throw new FlowException(String.format("There are not enough %s obligations to net.", currency));
+            }
+            final Party notary = candidates.get(0).getState().getNotary();
+
+            // Stage 2. Compute the residual obligations.
+            progressTracker.setCurrentStep(NETTING);
+            final List<Obligation> inputObligations = new ArrayList<>();
+            candidates.forEach(it -> inputObligations.add(it.getState().getData()));
+            final List<Obligation> residuals = ObligationNetting.net(inputObligations, this::resolveIdentity);
+            if (residuals.size() >= inputObligations.size()) {
+                throw new FlowException(String.format("Netting would not reduce the number of %s obligations.", currency));
+            }
+
+            // Stage 3. Consume the netted obligations and create the residuals.
+            progressTracker.setCurrentStep(BUILDING);
+            final TransactionBuilder builder = new TransactionBuilder(notary);
+            final Set<PublicKey> signerKeys = new LinkedHashSet<>();
+            final Set<Party> counterparties = new LinkedHashSet<>();
+            for (StateAndRef<Obligation> candidate : candidates) {
+                final Obligation obligation = candidate.getState().getData();
+                builder.addInputState(candidate);
+                signerKeys.addAll(obligation.getParticipantKeys());
+                for (AbstractParty participant : obligation.getParticipants()) {
+                    counterparties.add(resolveIdentity(participant));
+                }
+            }
+            counterparties.remove(getOurIdentity());
+            for (Obligation residual : residuals) {
+                builder.addOutputState(residual, OBLIGATION_CONTRACT_ID);
+                signerKeys.addAll(residual.getParticipantKeys());
+            }
+            builder.addCommand(new ObligationContract.Commands.Net(), ImmutableList.copyOf(signerKeys));
+
+            // Stage 4. Verify and sign the transaction.
+            progressTracker.setCurrentStep(SIGNING);
+            builder.verify(getServiceHub());
+            // We may be on the obligations under several confidential identities as well as our own.
+            final List<PublicKey> ourKeys = ImmutableList.copyOf(
+                    getServiceHub().getKeyManagementService().filterMyKeys(signerKeys));
+            final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, ourKeys);
+
+            // Stage 5. Every counterparty whose obligations are consumed must sign.
+            progressTracker.setCurrentStep(SYNCING);
+            final Set<FlowSession> sessions = new LinkedHashSet<>();
+            for (Party party : counterparties) {
+                sessions.add(initiateFlow(party));
+            }
+            subFlow(new IdentitySyncFlow.Send(sessions, ptx.getTx(), SYNCING.childProgressTracker()));
+
+            progressTracker.setCurrentStep(COLLECTING);
+            final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
+                    ptx,
+                    sessions,
+                    ourKeys,
+                    COLLECTING.childProgressTracker()));
+
+            // Stage 6. Notarise and record the transaction in our vaults.
+            progressTracker.setCurrentStep(FINALISING);
+            final Instant notarisationStarted = getServiceHub().getClock().instant();
+            final SignedTransaction ftx = subFlow(new FinalityFlow(stx, ImmutableSet.of(getOurIdentity())));
+            recordNotarisation(notary, notarisationStarted);
+            return ftx;
+        }
+
+        // Returns up to maxInputs obligations on the notary with the most nettable obligations. The vault is read no
+        // further once a notary has maxInputs of them.
+        private List<StateAndRef<Obligation>> getNettableObligations() {
+            final QueryCriteria criteria = new QueryCriteria.VaultCustomQueryCriteria(Builder.equal(
+                    getField("currency", ObligationSchemaV1.PersistentObligation.class), currency.getCurrencyCode()));
+
+            final Map<Party, List<StateAndRef<Obligation>>> byNotary = new LinkedHashMap<>();
+            final IdentityCacheService identities = getServiceHub().cordaService(IdentityCacheService.class);
+            forEachObligationPage(criteria, page -> {
+                for (StateAndRef<Obligation> state : page) {
+                    final Obligation obligation = state.getState().getData();
+                    if (identities.wellKnownPartyFromAnonymous(obligation.getLender()) == null
+                            || identities.wellKnownPartyFromAnonymous(obligation.getBorrower()) == null) {
+                        continue;
+                    }
+                    final List<StateAndRef<Obligation>> onNotary =
+                            byNotary.computeIfAbsent(state.getState().getNotary(), it -> new ArrayList<>());
+                    onNotary.add(state);
+                    if (onNotary.size() >= maxInputs) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            return byNotary.values().stream()
+                    .max(Comparator.comparingInt(List::size))
+                    .orElseGet(ArrayList::new);
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession otherFlow;
+
+        public Responder(FlowSession otherFlow) {
+            this.otherFlow = otherFlow;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            subFlow(new IdentitySyncFlow.Receive(otherFlow));
+            SignedTransaction stx = subFlow(new SignNetTxFlow(otherFlow, SignTransactionFlow.Companion.tracker()));
+            return waitForLedgerCommit(stx.getId());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.corda.examples.obligation.flows;
 
 import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.Amount;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.flows.FlowException;
@@ -10,25 +11,66 @@ import net.corda.core.flows.SignTransactionFlow;
 import net.corda.core.identity.AbstractParty;
 import net.corda.core.identity.Party;
 import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
 import net.corda.core.node.services.vault.QueryCriteria;
+import net.corda.core.node.services.vault.Sort;
+import net.corda.core.node.services.vault.SortAttribute;
+import net.corda.core.transactions.LedgerTransaction;
 import net.corda.core.transactions.SignedTransaction;
 import net.corda.core.utilities.ProgressTracker;
 import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationNetting;
+import net.corda.examples.obligation.services.CashBalanceService;
+import net.corda.examples.obligation.services.IdentityCacheService;
+import net.corda.examples.obligation.services.NotarySelectionService;
 
+import java.security.SignatureException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.HashSet;
 import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.MAX_PAGE_SIZE;
 
 /**
  * An abstract FlowLogic class that is subclassed by the obligation flows to
  * provide helper methods and classes.
  */
 abstract class ObligationBaseFlow extends FlowLogic<SignedTransaction> {
+    // The number of obligations read from the vault at a time by the flows that look through all of them.
+    static final int QUERY_PAGE_SIZE = 500;
+
+    final FlowTimer timer = new FlowTimer(getClass());
+
+    /** Moves the progress tracker on to the given step and starts timing it. */
+    void enterStep(ProgressTracker.Step step) {
+        getProgressTracker().setCurrentStep(step);
+        timer.enterStep(getServiceHub(), step.getLabel());
+    }
 
-    Party getFirstNotary() throws FlowException {
-        List<Party> notaries = getServiceHub().getNetworkMapCache().getNotaryIdentities();
-        if (notaries.isEmpty()) {
+    Party selectNotary(UniqueIdentifier linearId) throws FlowException {
+        Party notary = getServiceHub().cordaService(NotarySelectionService.class).select(linearId);
+        if (notary == null) {
             throw new FlowException("No available notary.");
         }
-        return notaries.get(0);
+        return notary;
+    }
+
+    void recordNotarisation(Party notary, Instant started) {
+        Duration latency = Duration.between(started, getServiceHub().getClock().instant());
+        getServiceHub().cordaService(NotarySelectionService.class).recordLatency(notary, latency);
+    }
+
+    Amount<Currency> getCashBalance(Currency currency) {
+        return getServiceHub().cordaService(CashBalanceService.class).getBalance(currency);
+    }
+
+    Amount<Currency> getCashBalanceOnNotary(Currency currency, Party notary) {
+        return getServiceHub().cordaService(CashBalanceService.class).getBalanceOnNotary(currency, notary);
     }
 
     StateAndRef<Obligation> getObligationByLinearId(UniqueIdentifier linearId) throws FlowException {
@@ -45,8 +87,42 @@ abstract class ObligationBaseFlow extends FlowLogic<SignedTransaction> {
         return obligations.get(0);
     }
 
+    List<StateAndRef<Obligation>> getObligationsByLinearIds(List<UniqueIdentifier> linearIds) throws FlowException {
+        QueryCriteria queryCriteria = new QueryCriteria.LinearStateQueryCriteria(
+                null,
+                linearIds,
+                Vault.StateStatus.UNCONSUMED,
+                null);
+
+        List<StateAndRef<Obligation>> obligations = getServiceHub().getVaultService().queryBy(
+                Obligation.class, queryCriteria, new PageSpecification(DEFAULT_PAGE_NUM, MAX_PAGE_SIZE)).getStates();
+        if (obligations.size() != new HashSet<>(linearIds).size()) {
+            throw new FlowException(String.format("Only %d of the %d obligations were found.", obligations.size(), linearIds.size()));
+        }
+        return obligations;
+    }
+
+    /**
+     * Passes the unconsumed obligations that match the criteria to {@code visitor} a page at a time, ordered by state
+     * ref so that the pages don't overlap, until it returns false or there are no more.
+     */
+    void forEachObligationPage(QueryCriteria criteria, Predicate<List<StateAndRef<Obligation>>> visitor) {
+        final Sort sorting = new Sort(ImmutableList.of(
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_TXN_ID), Sort.Direction.ASC),
+                new Sort.SortColumn(new SortAttribute.Standard(Sort.CommonStateAttribute.STATE_REF_INDEX), Sort.Direction.ASC)));
+        int pageNumber = DEFAULT_PAGE_NUM;
+        while (true) {
+            final List<StateAndRef<Obligation>> page = getServiceHub().getVaultService().queryBy(
+                    Obligation.class, criteria, new PageSpecification(pageNumber, QUERY_PAGE_SIZE), sorting).getStates();
+            if (!visitor.test(page) || page.size() < QUERY_PAGE_SIZE) {
+                return;
+            }
+            pageNumber++;
+        }
+    }
+
     Party resolveIdentity(AbstractParty abstractParty) {
-        return getServiceHub().getIdentityService().requireWellKnownPartyFromAnonymous(abstractParty);
+        return getServiceHub().cordaService(IdentityCacheService.class).requireWellKnownPartyFromAnonymous(abstractParty);
     }
 
     static class SignTxFlowNoChecking extends SignTransactionFlow {
@@ -59,4 +135,36 @@ abstract class ObligationBaseFlow extends FlowLogic<SignedTransaction> {
             // TODO: Add checking here.
         }
     }
+
+    /**
+     * Signs a net transaction only if it leaves our net position unchanged. The contract can't check this once
+     * confidential identities are involved, so each party checks its own position across all of its keys.
+     */
+    static class SignNetTxFlow extends SignTransactionFlow {
+        SignNetTxFlow(FlowSession otherFlow, ProgressTracker progressTracker) {
+            super(otherFlow, progressTracker);
+        }
+
+        @Override
+        protected void checkTransaction(SignedTransaction stx) throws FlowException {
+            final LedgerTransaction ltx;
+            try {
+                ltx = stx.toLedgerTransaction(getServiceHub(), false);
+            } catch (SignatureException e) {
+                throw new FlowException("The net transaction is not correctly signed.", e);
+            }
+            final IdentityCacheService identities = getServiceHub().cordaService(IdentityCacheService.class);
+            final Function<AbstractParty, AbstractParty> resolve = party -> {
+                final Party wellKnown = identities.wellKnownPartyFromAnonymous(party);
+                return wellKnown == null ? party : wellKnown;
+            };
+            final long before = ObligationNetting.netPositions(ltx.inputsOfType(Obligation.class), resolve)
+                    .getOrDefault(getOurIdentity(), 0L);
+            final long after = ObligationNetting.netPositions(ltx.outputsOfType(Obligation.class), resolve)
+                    .getOrDefault(getOurIdentity(), 0L);
+            if (before != after) {
+                throw new FlowException("Netting would change our net position.");
+            }
+        }
+    }
 }
\ No newline at end of file
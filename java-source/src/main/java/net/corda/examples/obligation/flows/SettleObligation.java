@@ -17,14 +17,14 @@ import net.corda.core.utilities.ProgressTracker.Step;
 import net.corda.examples.obligation.Obligation;
 import net.corda.examples.obligation.ObligationContract;
 import net.corda.examples.obligation.flows.ObligationBaseFlow.SignTxFlowNoChecking;
+import net.corda.examples.obligation.services.NotarySelectionService;
 import net.corda.finance.contracts.asset.Cash;
 
 import java.security.PublicKey;
+import java.time.Instant;
 import java.util.Currency;
 import java.util.List;
 
-import static net.corda.finance.contracts.GetBalances.getCashBalance;
-
 public class SettleObligation {
     @InitiatingFlow
     @StartableByRPC
@@ -34,6 +34,12 @@ public class SettleObligation {
         private final Boolean anonymous;
 
         private final Step PREPARATION = new Step("Obtaining IOU from vault.");
+        private final Step CHANGING_NOTARY = new Step("Moving IOU to the notary our cash is on.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return AbstractStateReplacementFlow.Instigator.Companion.tracker();
+            }
+        };
         private final Step BUILDING = new Step("Building and verifying transaction.");
         private final Step SIGNING = new Step("Signing transaction.");
         private final Step COLLECTING = new Step("Collecting counterparty signature.") {
@@ -50,7 +56,7 @@ public class SettleObligation {
         };
 
         private final ProgressTracker progressTracker = new ProgressTracker(
-                PREPARATION, BUILDING, SIGNING, COLLECTING, FINALISING
+                PREPARATION, CHANGING_NOTARY, BUILDING, SIGNING, COLLECTING, FINALISING
         );
 
         public Initiator(UniqueIdentifier linearId, Amount<Currency> amount, Boolean anonymous) {
@@ -67,9 +73,19 @@ public class SettleObligation {
         @Suspendable
         @Override
         public SignedTransaction call() throws FlowException {
+            try {
+                return timer.succeeded(getServiceHub(), settle());
+            } catch (FlowException | RuntimeException e) {
+                timer.failed(getServiceHub());
+                throw e;
+            }
+        }
+
+        @Suspendable
+        private SignedTransaction settle() throws FlowException {
             // Stage 1. Retrieve obligation specified by linearId from the vault.
-            progressTracker.setCurrentStep(PREPARATION);
-            final StateAndRef<Obligation> obligationToSettle = getObligationByLinearId(linearId);
+            enterStep(PREPARATION);
+            StateAndRef<Obligation> obligationToSettle = getObligationByLinearId(linearId);
             final Obligation inputObligation = obligationToSettle.getState().getData();
 
             // Stage 2. Resolve the lender and borrower identity if the obligation is anonymous.
@@ -82,7 +98,7 @@ public class SettleObligation {
             }
 
             // Stage 4. Check we have enough cash to settle the requested amount.
-            final Amount<Currency> cashBalance = getCashBalance(getServiceHub(), amount.getToken());
+            final Amount<Currency> cashBalance = getCashBalance(amount.getToken());
             final Amount<Currency> amountLeftToSettle = inputObligation.getAmount().minus(inputObligation.getPaid());
             if (cashBalance.getQuantity() <= 0L) {
                 throw new FlowException(String.format("Borrower has no %s to settle.", amount.getToken()));
@@ -94,13 +110,24 @@ public class SettleObligation {
                         "There's only %s left to settle but you pledged %s.", amountLeftToSettle, amount));
             }
 
+            // The cash we spend must be controlled by the same notary as the obligation. If we don't hold enough cash
+            // on the obligation's notary, move the obligation to a notary we do hold enough cash on.
+            final Party obligationNotary = obligationToSettle.getState().getNotary();
+            if (getCashBalanceOnNotary(amount.getToken(), obligationNotary).getQuantity() < amount.getQuantity()) {
+                final Party cashNotary = findNotaryWithCash(amount);
+                enterStep(CHANGING_NOTARY);
+                obligationToSettle = subFlow(new NotaryChangeFlow<>(
+                        obligationToSettle, cashNotary, CHANGING_NOTARY.childProgressTracker()));
+            }
+
             // Stage 5. Create a settle command.
             final List<PublicKey> requiredSigners = inputObligation.getParticipantKeys();
             final Command settleCommand = new Command<>(new ObligationContract.Commands.Settle(), requiredSigners);
 
             // Stage 6. Create a transaction builder. Add the settle command and input obligation.
-            progressTracker.setCurrentStep(BUILDING);
-            final TransactionBuilder builder = new TransactionBuilder(getFirstNotary())
+            enterStep(BUILDING);
+            final Party notary = obligationToSettle.getState().getNotary();
+            final TransactionBuilder builder = new TransactionBuilder(notary)
                     .addInputState(obligationToSettle)
                     .addCommand(settleCommand);
 
@@ -120,7 +147,7 @@ public class SettleObligation {
             }
 
             // Stage 9. Verify and sign the transaction.
-            progressTracker.setCurrentStep(SIGNING);
+            enterStep(SIGNING);
             builder.verify(getServiceHub());
             final List<PublicKey> signingKeys = new ImmutableList.Builder<PublicKey>()
                     .addAll(cashSigningKeys)
@@ -129,7 +156,7 @@ public class SettleObligation {
             final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, signingKeys);
 
             // Stage 10. Get counterparty signature.
-            progressTracker.setCurrentStep(COLLECTING);
+            enterStep(COLLECTING);
             final FlowSession session = initiateFlow(lenderIdentity);
             subFlow(new IdentitySyncFlow.Send(session, ptx.getTx()));
             final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
@@ -139,14 +166,27 @@ public class SettleObligation {
                     COLLECTING.childProgressTracker()));
 
             // Stage 11. Finalize the transaction.
-            progressTracker.setCurrentStep(FINALISING);
-            return subFlow(new FinalityFlow(stx, FINALISING.childProgressTracker()));
+            enterStep(FINALISING);
+            final Instant finalisationStarted = getServiceHub().getClock().instant();
+            final SignedTransaction ftx = subFlow(new FinalityFlow(stx, FINALISING.childProgressTracker()));
+            recordNotarisation(notary, finalisationStarted);
+            return ftx;
+        }
+
+        private Party findNotaryWithCash(Amount<Currency> amount) throws FlowException {
+            for (Party notary : getServiceHub().cordaService(NotarySelectionService.class).getNotaries()) {
+                if (getCashBalanceOnNotary(amount.getToken(), notary).getQuantity() >= amount.getQuantity()) {
+                    return notary;
+                }
+            }
+            throw new FlowException(String.format("Borrower does not hold %s on any single notary.", amount));
         }
     }
 
     @InitiatedBy(Initiator.class)
     public static class Responder extends FlowLogic<SignedTransaction> {
         private final FlowSession otherFlow;
+        private final FlowTimer timer = new FlowTimer(getClass());
 
         public Responder(FlowSession otherFlow) {
             this.otherFlow = otherFlow;
@@ -155,9 +195,17 @@ public class SettleObligation {
         @Suspendable
         @Override
         public SignedTransaction call() throws FlowException {
-            subFlow(new IdentitySyncFlow.Receive(otherFlow));
-            SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
-            return waitForLedgerCommit(stx.getId());
+            try {
+                timer.enterStep(getServiceHub(), FlowTimer.SYNCING_IDENTITIES);
+                subFlow(new IdentitySyncFlow.Receive(otherFlow));
+                timer.enterStep(getServiceHub(), FlowTimer.SIGNING);
+                final SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
+                timer.enterStep(getServiceHub(), FlowTimer.WAITING_FOR_COMMIT);
+                return timer.succeeded(getServiceHub(), waitForLedgerCommit(stx.getId()));
+            } catch (FlowException | RuntimeException e) {
+                timer.failed(getServiceHub());
+                throw e;
+            }
         }
     }
 }
\ No newline at end of file
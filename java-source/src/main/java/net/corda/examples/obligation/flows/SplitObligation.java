@@ -0,0 +1,155 @@
+package net.corda.examples.obligation.flows;
+
+import co.paralleluniverse.fibers.Suspendable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.corda.confidential.IdentitySyncFlow;
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.flows.*;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.transactions.SignedTransaction;
+import net.corda.core.transactions.TransactionBuilder;
+import net.corda.core.utilities.ProgressTracker;
+import net.corda.core.utilities.ProgressTracker.Step;
+import net.corda.examples.obligation.Obligation;
+import net.corda.examples.obligation.ObligationContract;
+import net.corda.examples.obligation.flows.ObligationBaseFlow.SignTxFlowNoChecking;
+
+import java.util.Currency;
+import java.util.List;
+
+import static net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID;
+
+/**
+ * Divides an obligation into several smaller obligations between the same parties, each with a fresh linear ID, so that
+ * the parts can be transferred or settled independently. Either the lender or the borrower may start the split.
+ */
+public class SplitObligation {
+
+    @StartableByRPC
+    @InitiatingFlow
+    public static class Initiator extends ObligationBaseFlow {
+        private final UniqueIdentifier linearId;
+        private final List<Amount<Currency>> amounts;
+
+        private final Step PREPARATION = new Step("Obtaining IOU from vault.");
+        private final Step BUILDING = new Step("Building and verifying transaction.");
+        private final Step SIGNING = new Step("Signing transaction.");
+        private final Step SYNCING = new Step("Syncing identities.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return IdentitySyncFlow.Send.Companion.tracker();
+            }
+        };
+        private final Step COLLECTING = new Step("Collecting counterparty signature.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return CollectSignaturesFlow.Companion.tracker();
+            }
+        };
+        private final Step FINALISING = new Step("Finalising transaction.") {
+            @Override
+            public ProgressTracker childProgressTracker() {
+                return FinalityFlow.Companion.tracker();
+            }
+        };
+
+        private final ProgressTracker progressTracker = new ProgressTracker(
+                PREPARATION, BUILDING, SIGNING, SYNCING, COLLECTING, FINALISING
+        );
+
+        public Initiator(UniqueIdentifier linearId, List<Amount<Currency>> amounts) {
+            this.linearId = linearId;
+            this.amounts = amounts;
+        }
+
+        @Override
+        public ProgressTracker getProgressTracker() {
+            return progressTracker;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            // Stage 1. Retrieve obligation specified by linearId from the vault.
+            progressTracker.setCurrentStep(PREPARATION);
+            final StateAndRef<Obligation> obligationToSplit = getObligationByLinearId(linearId);
+            final Obligation inputObligation = obligationToSplit.getState().getData();
+
+            // Stage 2. Work out which of the lender and borrower we are.
+            final Party lender = resolveIdentity(inputObligation.getLender());
+            final Party borrower = resolveIdentity(inputObligation.getBorrower());
+            final AbstractParty ourParticipant;
+            final Party counterparty;
+            if (getOurIdentity().equals(lender)) {
+                ourParticipant = inputObligation.getLender();
+                counterparty = borrower;
+            } else if (getOurIdentity().equals(borrower)) {
+                ourParticipant = inputObligation.getBorrower();
+                counterparty = lender;
+            } else {
+                throw new FlowException("Obligation split can only be initiated by the lender or borrower.");
+            }
+
+            // Stage 3. Create the parts.
+            progressTracker.setCurrentStep(BUILDING);
+            if (amounts.size() < 2) {
+                throw new FlowException("An obligation must be split into at least two parts.");
+            }
+            final List<Obligation> parts;
+            try {
+                parts = inputObligation.split(amounts);
+            } catch (IllegalArgumentException e) {
+                throw new FlowException(e.getMessage());
+            }
+
+            final TransactionBuilder builder = new TransactionBuilder(obligationToSplit.getState().getNotary())
+                    .addInputState(obligationToSplit);
+            for (Obligation part : parts) {
+                builder.addOutputState(part, OBLIGATION_CONTRACT_ID);
+            }
+            builder.addCommand(new ObligationContract.Commands.Split(), inputObligation.getParticipantKeys());
+
+            // Stage 4. Verify and sign the transaction.
+            progressTracker.setCurrentStep(SIGNING);
+            builder.verify(getServiceHub());
+            final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, ourParticipant.getOwningKey());
+
+            // Stage 5. Get the counterparty's signature.
+            progressTracker.setCurrentStep(SYNCING);
+            final FlowSession session = initiateFlow(counterparty);
+            subFlow(new IdentitySyncFlow.Send(ImmutableSet.of(session), ptx.getTx(), SYNCING.childProgressTracker()));
+
+            progressTracker.setCurrentStep(COLLECTING);
+            final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
+                    ptx,
+                    ImmutableSet.of(session),
+                    ImmutableList.of(ourParticipant.getOwningKey()),
+                    COLLECTING.childProgressTracker()));
+
+            // Stage 6. Notarise and record the transaction in our vaults.
+            progressTracker.setCurrentStep(FINALISING);
+            return subFlow(new FinalityFlow(stx, ImmutableSet.of(getOurIdentity())));
+        }
+    }
+
+    @InitiatedBy(Initiator.class)
+    public static class Responder extends FlowLogic<SignedTransaction> {
+        private final FlowSession otherFlow;
+
+        public Responder(FlowSession otherFlow) {
+            this.otherFlow = otherFlow;
+        }
+
+        @Suspendable
+        @Override
+        public SignedTransaction call() throws FlowException {
+            subFlow(new IdentitySyncFlow.Receive(otherFlow));
+            SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
+            return waitForLedgerCommit(stx.getId());
+        }
+    }
+}
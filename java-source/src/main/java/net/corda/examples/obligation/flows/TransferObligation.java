@@ -5,7 +5,9 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import net.corda.confidential.IdentitySyncFlow;
 import net.corda.confidential.SwapIdentitiesFlow;
+import net.corda.core.contracts.Amount;
 import net.corda.core.contracts.Command;
+import net.corda.core.contracts.CommandData;
 import net.corda.core.contracts.StateAndRef;
 import net.corda.core.contracts.UniqueIdentifier;
 import net.corda.core.flows.*;
@@ -21,6 +23,7 @@ import net.corda.examples.obligation.ObligationContract;
 import net.corda.examples.obligation.flows.ObligationBaseFlow.SignTxFlowNoChecking;
 
 import java.security.PublicKey;
+import java.util.Currency;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -36,6 +39,7 @@ public class TransferObligation {
         private final UniqueIdentifier linearId;
         private final Party newLender;
         private final Boolean anonymous;
+        private final Amount<Currency> amount;
 
         private final Step PREPARATION = new Step("Obtaining IOU from vault.");
         private final Step BUILDING = new Step("Building and verifying transaction.");
@@ -64,9 +68,15 @@ public class TransferObligation {
         );
 
         public Initiator(UniqueIdentifier linearId, Party newLender, Boolean anonymous) {
+            this(linearId, newLender, anonymous, null);
+        }
+
+        /** Transfers only {@code amount} of what is outstanding on the obligation to the new lender. */
+        public Initiator(UniqueIdentifier linearId, Party newLender, Boolean anonymous, Amount<Currency> amount) {
             this.linearId = linearId;
             this.newLender = newLender;
             this.anonymous = anonymous;
+            this.amount = amount;
         }
 
         @Override
@@ -77,8 +87,18 @@ public class TransferObligation {
         @Suspendable
         @Override
         public SignedTransaction call() throws FlowException {
+            try {
+                return timer.succeeded(getServiceHub(), transfer());
+            } catch (FlowException | RuntimeException e) {
+                timer.failed(getServiceHub());
+                throw e;
+            }
+        }
+
+        @Suspendable
+        private SignedTransaction transfer() throws FlowException {
             // Stage 1. Retrieve obligation specified by linearId from the vault.
-            progressTracker.setCurrentStep(PREPARATION);
+            enterStep(PREPARATION);
             final StateAndRef<Obligation> obligationToTransfer = getObligationByLinearId(linearId);
             final Obligation inputObligation = obligationToTransfer.getState().getData();
 
@@ -90,29 +110,51 @@ public class TransferObligation {
                 throw new IllegalStateException("Obligation transfer can only be initiated by the lender.");
             }
 
-            // Stage 4. Create the new obligation state reflecting a new lender.
-            progressTracker.setCurrentStep(BUILDING);
-            final Obligation transferredObligation = createOutputObligation(inputObligation);
+            // Stage 4. Create the new obligation state reflecting a new lender. When only part of what is outstanding
+            // is transferred, the obligation is split in two and only the transferred part gets the new lender.
+            // Transferring everything outstanding moves the whole obligation, rather than leaving a paid-off part.
+            enterStep(BUILDING);
+            final AbstractParty newLenderIdentity = createNewLenderIdentity();
+            final Amount<Currency> amountOutstanding = inputObligation.getAmount().minus(inputObligation.getPaid());
+            final List<Obligation> outputObligations;
+            final CommandData commandData;
+            if (amount == null || amount.equals(amountOutstanding)) {
+                outputObligations = ImmutableList.of(inputObligation.withNewLender(newLenderIdentity));
+                commandData = new ObligationContract.Commands.Transfer();
+            } else {
+                if (!amount.getToken().equals(amountOutstanding.getToken())
+                        || amount.getQuantity() <= 0
+                        || amount.compareTo(amountOutstanding) >= 0) {
+                    throw new FlowException(String.format(
+                            "Can only transfer between nothing and the %s outstanding, not %s.", amountOutstanding, amount));
+                }
+                final List<Obligation> parts = inputObligation.split(ImmutableList.of(inputObligation.getAmount().minus(amount), amount));
+                outputObligations = ImmutableList.of(parts.get(0), parts.get(1).withNewLender(newLenderIdentity));
+                commandData = new ObligationContract.Commands.Split();
+            }
 
             // Stage 4. Create the transfer command.
             final List<PublicKey> signerKeys = new ImmutableList.Builder<PublicKey>()
                     .addAll(inputObligation.getParticipantKeys())
-                    .add(transferredObligation.getLender().getOwningKey()).build();
-            final Command transferCommand = new Command<>(new ObligationContract.Commands.Transfer(), signerKeys);
+                    .add(newLenderIdentity.getOwningKey()).build();
+            final Command transferCommand = new Command<>(commandData, signerKeys);
 
             // Stage 5. Create a transaction builder, then add the states and commands.
-            final TransactionBuilder builder = new TransactionBuilder(getFirstNotary())
+            // The transaction must use the notary the obligation was issued on.
+            final TransactionBuilder builder = new TransactionBuilder(obligationToTransfer.getState().getNotary())
                     .addInputState(obligationToTransfer)
-                    .addOutputState(transferredObligation, OBLIGATION_CONTRACT_ID)
                     .addCommand(transferCommand);
+            for (Obligation outputObligation : outputObligations) {
+                builder.addOutputState(outputObligation, OBLIGATION_CONTRACT_ID);
+            }
 
             // Stage 6. Verify and sign the transaction.
-            progressTracker.setCurrentStep(SIGNING);
+            enterStep(SIGNING);
             builder.verify(getServiceHub());
             final SignedTransaction ptx = getServiceHub().signInitialTransaction(builder, inputObligation.getLender().getOwningKey());
 
             // Stage 7. Get a Party object for the borrower.
-            progressTracker.setCurrentStep(SYNCING);
+            enterStep(SYNCING);
             final Party borrower = getBorrowerIdentity(inputObligation);
 
             // Stage 8. Send any keys and certificates so the signers can verify each other's identity.
@@ -125,7 +167,7 @@ public class TransferObligation {
             subFlow(new IdentitySyncFlow.Send(sessions, ptx.getTx(), SYNCING.childProgressTracker()));
 
             // Stage 9. Collect signatures from the borrower and the new lender.
-            progressTracker.setCurrentStep(COLLECTING);
+            enterStep(COLLECTING);
             final SignedTransaction stx = subFlow(new CollectSignaturesFlow(
                     ptx,
                     sessions,
@@ -133,7 +175,7 @@ public class TransferObligation {
                     COLLECTING.childProgressTracker()));
 
             // Stage 10. Notarise and record, the transaction in our vaults. Send a copy to me as well.
-            progressTracker.setCurrentStep(FINALISING);
+            enterStep(FINALISING);
             return subFlow(new FinalityFlow(stx, ImmutableSet.of(getOurIdentity())));
         }
 
@@ -147,17 +189,16 @@ public class TransferObligation {
         }
 
         @Suspendable
-        private Obligation createOutputObligation(Obligation inputObligation) throws FlowException {
+        private AbstractParty createNewLenderIdentity() throws FlowException {
             if (anonymous) {
                 // TODO: Is there a flow to get a key and cert only from the counterparty?
                 final HashMap<Party, AnonymousParty> txKeys = subFlow(new SwapIdentitiesFlow(newLender));
                 if (!txKeys.containsKey(newLender)) {
                     throw new FlowException("Couldn't get lender's conf. identity.");
                 }
-                final AnonymousParty anonymousLender = txKeys.get(newLender);
-                return inputObligation.withNewLender(anonymousLender);
+                return txKeys.get(newLender);
             } else {
-                return inputObligation.withNewLender(newLender);
+                return newLender;
             }
         }
 
@@ -174,6 +215,7 @@ public class TransferObligation {
     @InitiatedBy(Initiator.class)
     public static class Responder extends FlowLogic<SignedTransaction> {
         private final FlowSession otherFlow;
+        private final FlowTimer timer = new FlowTimer(getClass());
 
         public Responder(FlowSession otherFlow) {
             this.otherFlow = otherFlow;
@@ -182,9 +224,17 @@ public class TransferObligation {
         @Suspendable
         @Override
         public SignedTransaction call() throws FlowException {
-            subFlow(new IdentitySyncFlow.Receive(otherFlow));
-            SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
-            return waitForLedgerCommit(stx.getId());
+            try {
+                timer.enterStep(getServiceHub(), FlowTimer.SYNCING_IDENTITIES);
+                subFlow(new IdentitySyncFlow.Receive(otherFlow));
+                timer.enterStep(getServiceHub(), FlowTimer.SIGNING);
+                final SignedTransaction stx = subFlow(new SignTxFlowNoChecking(otherFlow, SignTransactionFlow.Companion.tracker()));
+                timer.enterStep(getServiceHub(), FlowTimer.WAITING_FOR_COMMIT);
+                return timer.succeeded(getServiceHub(), waitForLedgerCommit(stx.getId()));
+            } catch (FlowException | RuntimeException e) {
+                timer.failed(getServiceHub());
+                throw e;
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package net.corda.examples.obligation.schema;
+
+/**
+ * The family of schemas for {@link net.corda.examples.obligation.Obligation}.
+ */
+public class ObligationSchema {
+}
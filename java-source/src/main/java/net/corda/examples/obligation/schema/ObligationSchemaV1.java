@@ -0,0 +1,94 @@
+package net.corda.examples.obligation.schema;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.schemas.MappedSchema;
+import net.corda.core.schemas.PersistentState;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.util.UUID;
+
+import static net.corda.core.crypto.CryptoUtils.toStringShort;
+
+/**
+ * An Obligation schema. Parties are stored as the hash of their owning key so that confidential obligations can be
+ * filtered in SQL without resolving the well-known identity behind the key.
+ */
+public class ObligationSchemaV1 extends MappedSchema {
+    public ObligationSchemaV1() {
+        super(ObligationSchema.class, 1, ImmutableList.of(PersistentObligation.class));
+    }
+
+    public static String keyHash(AbstractParty party) {
+        return toStringShort(party.getOwningKey());
+    }
+
+    @Entity
+    @Table(name = "obligation_states", indexes = {
+            @Index(name = "obligation_lender_idx", columnList = "lender_key_hash"),
+            @Index(name = "obligation_borrower_idx", columnList = "borrower_key_hash"),
+            @Index(name = "obligation_currency_idx", columnList = "currency"),
+            @Index(name = "obligation_outstanding_idx", columnList = "currency,outstanding")
+    })
+    public static class PersistentObligation extends PersistentState {
+        @Column(name = "lender_key_hash") private final String lenderKeyHash;
+        @Column(name = "borrower_key_hash") private final String borrowerKeyHash;
+        @Column(name = "currency") private final String currency;
+        @Column(name = "amount") private final long amount;
+        @Column(name = "paid") private final long paid;
+        @Column(name = "outstanding") private final long outstanding;
+        @Column(name = "linear_id") private final UUID linearId;
+
+        public PersistentObligation(String lenderKeyHash, String borrowerKeyHash, String currency, long amount, long paid, UUID linearId) {
+            this.lenderKeyHash = lenderKeyHash;
+            this.borrowerKeyHash = borrowerKeyHash;
+            this.currency = currency;
+            this.amount = amount;
+            this.paid = paid;
+            this.outstanding = amount - paid;
+            this.linearId = linearId;
+        }
+
+        // Default constructor required by hibernate.
+        public PersistentObligation() {
+            this.lenderKeyHash = null;
+            this.borrowerKeyHash = null;
+            this.currency = null;
+            this.amount = 0;
+            this.paid = 0;
+            this.outstanding = 0;
+            this.linearId = null;
+        }
+
+        public String getLenderKeyHash() {
+            return lenderKeyHash;
+        }
+
+        public String getBorrowerKeyHash() {
+            return borrowerKeyHash;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        public long getPaid() {
+            return paid;
+        }
+
+        public long getOutstanding() {
+            return outstanding;
+        }
+
+        public UUID getLinearId() {
+            return linearId;
+        }
+    }
+}
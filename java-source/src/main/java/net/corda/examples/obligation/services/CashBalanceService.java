@@ -0,0 +1,65 @@
+package net.corda.examples.obligation.services;
+
+import net.corda.core.contracts.Amount;
+import net.corda.core.identity.Party;
+import net.corda.core.messaging.DataFeed;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.Vault;
+import net.corda.core.node.services.vault.PageSpecification;
+import net.corda.core.node.services.vault.QueryCriteria.VaultQueryCriteria;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.finance.contracts.asset.Cash;
+
+import java.util.Currency;
+import java.util.Map;
+
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.DEFAULT_PAGE_NUM;
+import static net.corda.core.node.services.vault.QueryCriteriaUtils.MAX_PAGE_SIZE;
+
+/**
+ * A node service that keeps the node's cash balances up to date from the vault, so that flows can check how much cash
+ * is available without running an aggregate vault query each time.
+ *
+ * The balances are seeded from a snapshot of the vault the first time they are read, which must be from within a flow,
+ * and are then maintained from vault updates. Updates are applied once the transaction that produced them commits, so
+ * a balance read just after a commit may briefly lag the vault. The balances are only used for pre-checks: selecting
+ * the cash to spend still queries the vault.
+ */
+@CordaService
+public class CashBalanceService extends SingletonSerializeAsToken {
+    private final AppServiceHub services;
+    private final CashBalances balances = new CashBalances();
+    private boolean started = false;
+
+    public CashBalanceService(AppServiceHub services) {
+        this.services = services;
+    }
+
+    public Amount<Currency> getBalance(Currency currency) {
+        start();
+        return balances.getBalance(currency);
+    }
+
+    public Amount<Currency> getBalanceOnNotary(Currency currency, Party notary) {
+        start();
+        return balances.getBalanceOnNotary(currency, notary);
+    }
+
+    public Map<Currency, Amount<Currency>> getBalances() {
+        start();
+        return balances.getBalances();
+    }
+
+    private synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+
+        final DataFeed<Vault.Page<Cash.State>, Vault.Update<Cash.State>> feed = services.getVaultService().trackBy(
+                Cash.State.class, new VaultQueryCriteria(), new PageSpecification(DEFAULT_PAGE_NUM, MAX_PAGE_SIZE));
+        feed.getSnapshot().getStates().forEach(balances::add);
+        feed.getUpdates().subscribe(balances::apply);
+    }
+}
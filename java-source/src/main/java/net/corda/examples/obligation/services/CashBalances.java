@@ -0,0 +1,78 @@
+package net.corda.examples.obligation.services;
+
+import net.corda.core.contracts.Amount;
+import net.corda.core.contracts.Issued;
+import net.corda.core.contracts.StateAndRef;
+import net.corda.core.contracts.StateRef;
+import net.corda.core.identity.Party;
+import net.corda.core.node.services.Vault;
+import net.corda.finance.contracts.asset.Cash;
+
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Running totals of the unconsumed cash in a vault, by currency and by notary, maintained from vault updates.
+ */
+public class CashBalances {
+    private final Set<StateRef> states = new HashSet<>();
+    private final Map<Party, Map<Currency, Long>> balancesByNotary = new HashMap<>();
+
+    public synchronized void add(StateAndRef<Cash.State> state) {
+        if (states.add(state.getRef())) {
+            adjust(state, 1);
+        }
+    }
+
+    public synchronized void remove(StateAndRef<Cash.State> state) {
+        if (states.remove(state.getRef())) {
+            adjust(state, -1);
+        }
+    }
+
+    public synchronized void apply(Vault.Update<Cash.State> update) {
+        update.getConsumed().forEach(this::remove);
+        update.getProduced().forEach(this::add);
+    }
+
+    public synchronized Amount<Currency> getBalance(Currency currency) {
+        long quantity = 0;
+        for (Map<Currency, Long> balances : balancesByNotary.values()) {
+            quantity += balances.getOrDefault(currency, 0L);
+        }
+        return new Amount<>(quantity, currency);
+    }
+
+    public synchronized Amount<Currency> getBalanceOnNotary(Currency currency, Party notary) {
+        final Map<Currency, Long> balances = balancesByNotary.getOrDefault(notary, Collections.emptyMap());
+        return new Amount<>(balances.getOrDefault(currency, 0L), currency);
+    }
+
+    /** Returns the balance of every currency held. */
+    public synchronized Map<Currency, Amount<Currency>> getBalances() {
+        final Map<Currency, Long> totals = new LinkedHashMap<>();
+        for (Map<Currency, Long> balances : balancesByNotary.values()) {
+            balances.forEach((currency, quantity) -> totals.merge(currency, quantity, Long::sum));
+        }
+        final Map<Currency, Amount<Currency>> amounts = new LinkedHashMap<>();
+        totals.forEach((currency, quantity) -> amounts.put(currency, new Amount<>(quantity, currency)));
+        return amounts;
+    }
+
+    // Guarded by this.
+    private void adjust(StateAndRef<Cash.State> state, int sign) {
+        final Party notary = state.getState().getNotary();
+        final Amount<Issued<Currency>> amount = state.getState().getData().getAmount();
+        final Map<Currency, Long> balances = balancesByNotary.computeIfAbsent(notary, key -> new HashMap<>());
+        // Balances that reach zero are removed, so that currencies no longer held aren't reported.
+        balances.merge(amount.getToken().getProduct(), sign * amount.getQuantity(), (a, b) -> a + b == 0 ? null : a + b);
+        if (balances.isEmpty()) {
+            balancesByNotary.remove(notary);
+        }
+    }
+}
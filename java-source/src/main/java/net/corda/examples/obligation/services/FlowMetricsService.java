@@ -0,0 +1,73 @@
+package net.corda.examples.obligation.services;
+
+import com.codahale.metrics.JmxReporter;
+import com.codahale.metrics.MetricRegistry;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A node service that records how long the obligation flows take, overall and in each of their progress steps, and
+ * how often they succeed or fail.
+ *
+ * The metrics are kept in a registry of their own and published over JMX in the {@link #JMX_DOMAIN} domain, with
+ * durations in milliseconds. For a flow named {@code IssueObligation.Initiator} they are:
+ *
+ * - {@code IssueObligation.Initiator.duration}: a timer of the flows that succeeded.
+ * - {@code IssueObligation.Initiator.succeeded} and {@code .failed}: counters of the finished flows.
+ * - {@code IssueObligation.Initiator.steps.<step>}: a timer of each step that was left for the next one, or that was
+ *   the last step of a flow that succeeded.
+ * - {@code IssueObligation.Initiator.steps.<step>.failed}: a counter of the flows that failed in that step.
+ *
+ * Other services may add their own metrics to the registry, such as the identity cache's hits and misses from
+ * {@link IdentityCacheService}.
+ */
+@CordaService
+public class FlowMetricsService extends SingletonSerializeAsToken {
+    public static final String JMX_DOMAIN = "net.corda.examples.obligation";
+
+    private final MetricRegistry registry = new MetricRegistry();
+
+    public FlowMetricsService(AppServiceHub services) {
+        JmxReporter.forRegistry(registry)
+                .inDomain(JMX_DOMAIN)
+                .convertDurationsTo(TimeUnit.MILLISECONDS)
+                .convertRatesTo(TimeUnit.SECONDS)
+                .build()
+                .start();
+    }
+
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    public void recordStep(String flow, String step, Duration duration) {
+        registry.timer(name(flow, "steps", metricName(step))).update(duration.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStepFailure(String flow, String step) {
+        registry.counter(name(flow, "steps", metricName(step), "failed")).inc();
+    }
+
+    public void recordSuccess(String flow, Duration duration) {
+        registry.timer(name(flow, "duration")).update(duration.toNanos(), TimeUnit.NANOSECONDS);
+        registry.counter(name(flow, "succeeded")).inc();
+    }
+
+    public void recordFailure(String flow) {
+        registry.counter(name(flow, "failed")).inc();
+    }
+
+    /**
+     * Turns a progress step label such as "Collecting counterparty signature." into a name that can be used in a JMX
+     * object name, by dropping the trailing full stop and the characters that object names reserve.
+     */
+    static String metricName(String step) {
+        return step.replaceAll("[,=:*?\"\\n]", "").replaceAll("\\.+$", "").trim();
+    }
+}
@@ -0,0 +1,68 @@
+package net.corda.examples.obligation.services;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+
+import java.util.function.Function;
+
+/**
+ * A bounded, least-recently-used cache of confidential identity to well-known identity mappings.
+ *
+ * The certificate binding a confidential key to a well-known party never changes once it has been registered, so
+ * successful lookups can be cached indefinitely. Failed lookups are not cached, which means a key is picked up as soon
+ * as its identity is registered with the node (e.g. by the IdentitySyncFlow).
+ */
+public class IdentityCache {
+    public static final long DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private final Function<AbstractParty, Party> lookup;
+    private final Cache<AbstractParty, Party> cache;
+
+    public IdentityCache(long maximumSize, Function<AbstractParty, Party> lookup) {
+        this.lookup = lookup;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public IdentityCache(Function<AbstractParty, Party> lookup) {
+        this(DEFAULT_MAXIMUM_SIZE, lookup);
+    }
+
+    /** Returns the well-known party for {@code party}, or null if it cannot be resolved. */
+    public Party wellKnownPartyFromAnonymous(AbstractParty party) {
+        final Party cached = cache.getIfPresent(party);
+        if (cached != null) {
+            return cached;
+        }
+        final Party wellKnownParty = lookup.apply(party);
+        if (wellKnownParty != null) {
+            cache.put(party, wellKnownParty);
+        }
+        return wellKnownParty;
+    }
+
+    public Party requireWellKnownPartyFromAnonymous(AbstractParty party) {
+        final Party wellKnownParty = wellKnownPartyFromAnonymous(party);
+        if (wellKnownParty == null) {
+            throw new IllegalStateException(String.format("Could not deanonymise party %s", party.getOwningKey()));
+        }
+        return wellKnownParty;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -0,0 +1,59 @@
+package net.corda.examples.obligation.services;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import net.corda.core.identity.AbstractParty;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A node service that shares an {@link IdentityCache} between all the obligation flows running on the node.
+ *
+ * The cache's hits and misses are published with the flow metrics, as the {@code IdentityCache.hits} and
+ * {@code IdentityCache.misses} gauges of {@link FlowMetricsService}. They are registered on the first lookup, as the
+ * other services may not have been created yet when this one is.
+ */
+@CordaService
+public class IdentityCacheService extends SingletonSerializeAsToken {
+    private final AppServiceHub services;
+    private final IdentityCache cache;
+    private volatile boolean metricsRegistered = false;
+
+    public IdentityCacheService(AppServiceHub services) {
+        this.services = services;
+        this.cache = new IdentityCache(party -> services.getIdentityService().wellKnownPartyFromAnonymous(party));
+    }
+
+    public Party wellKnownPartyFromAnonymous(AbstractParty party) {
+        registerMetrics();
+        return cache.wellKnownPartyFromAnonymous(party);
+    }
+
+    public Party requireWellKnownPartyFromAnonymous(AbstractParty party) {
+        registerMetrics();
+        return cache.requireWellKnownPartyFromAnonymous(party);
+    }
+
+    private void registerMetrics() {
+        if (metricsRegistered) {
+            return;
+        }
+        synchronized (this) {
+            if (metricsRegistered) {
+                return;
+            }
+            final MetricRegistry registry = services.cordaService(FlowMetricsService.class).getRegistry();
+            registry.register(name("IdentityCache", "hits"), (Gauge<Long>) () -> cache.getStats().hitCount());
+            registry.register(name("IdentityCache", "misses"), (Gauge<Long>) () -> cache.getStats().missCount());
+            metricsRegistered = true;
+        }
+    }
+
+    public IdentityCache getCache() {
+        return cache;
+    }
+}
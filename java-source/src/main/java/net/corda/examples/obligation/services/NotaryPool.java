@@ -0,0 +1,83 @@
+package net.corda.examples.obligation.services;
+
+import com.google.common.collect.ImmutableList;
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.Party;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * The set of notaries new obligations can be issued on, and the strategies for choosing between them.
+ */
+public class NotaryPool {
+    public enum Strategy {
+        /** Cycles through the notaries in turn. */
+        ROUND_ROBIN,
+        /** Always picks the same notary for a given linear ID. */
+        HASH_BY_LINEAR_ID,
+        /** Picks the notary with the lowest observed notarisation latency. Unobserved notaries are tried first. */
+        LEAST_LATENCY
+    }
+
+    // The weight given to the newest latency observation in the moving average.
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private volatile List<Party> notaries = ImmutableList.of();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final Map<Party, Double> averageLatencies = new ConcurrentHashMap<>();
+
+    public List<Party> getNotaries() {
+        return notaries;
+    }
+
+    public void update(List<Party> notaries) {
+        // Sort the notaries so that every node hashes a linear ID to the same notary.
+        this.notaries = ImmutableList.copyOf(notaries.stream()
+                .sorted(Comparator.comparing(notary -> notary.getName().toString()))
+                .collect(Collectors.toList()));
+        averageLatencies.keySet().retainAll(notaries);
+    }
+
+    /** Returns the chosen notary, or null if there are no notaries. */
+    public Party select(Strategy strategy, UniqueIdentifier linearId) {
+        final List<Party> candidates = notaries;
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        switch (strategy) {
+            case ROUND_ROBIN:
+                return candidates.get(Math.floorMod(nextIndex.getAndIncrement(), candidates.size()));
+            case HASH_BY_LINEAR_ID:
+                return candidates.get(Math.floorMod(linearId.getId().hashCode(), candidates.size()));
+            case LEAST_LATENCY:
+                Party best = null;
+                double bestLatency = Double.MAX_VALUE;
+                for (Party notary : candidates) {
+                    final double latency = averageLatencies.getOrDefault(notary, 0.0);
+                    if (latency < bestLatency) {
+                        best = notary;
+                        bestLatency = latency;
+                    }
+                }
+                return best;
+            default:
+                throw new IllegalArgumentException("Unrecognised notary selection strategy " + strategy);
+        }
+    }
+
+    public void recordLatency(Party notary, Duration latency) {
+        final double millis = latency.toNanos() / 1e6;
+        averageLatencies.merge(notary, millis,
+                (average, latest) -> average + LATENCY_SMOOTHING * (latest - average));
+    }
+
+    public Double getAverageLatency(Party notary) {
+        return averageLatencies.get(notary);
+    }
+}
@@ -0,0 +1,79 @@
+package net.corda.examples.obligation.services;
+
+import net.corda.core.contracts.UniqueIdentifier;
+import net.corda.core.identity.Party;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.node.services.NetworkMapCache;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Chooses the notary for newly issued obligations, so that issuances are spread across all the notaries on the
+ * network rather than all going to the first one.
+ *
+ * The notary list is cached and refreshed whenever the network map changes. The strategy defaults to round-robin and
+ * can be set with the {@code obligation.notarySelection} system property. An unknown value falls back to round-robin.
+ */
+@CordaService
+public class NotarySelectionService extends SingletonSerializeAsToken {
+    public static final String STRATEGY_PROPERTY = "obligation.notarySelection";
+    private static final Logger logger = LoggerFactory.getLogger(NotarySelectionService.class);
+
+    private final NetworkMapCache networkMapCache;
+    private final NotaryPool pool = new NotaryPool();
+    private volatile NotaryPool.Strategy strategy;
+
+    public NotarySelectionService(AppServiceHub services) {
+        this.networkMapCache = services.getNetworkMapCache();
+        this.strategy = strategyFromProperty();
+        networkMapCache.getChanged().subscribe(change -> refresh());
+        refresh();
+    }
+
+    /** Returns the notary to issue an obligation with the given linear ID on, or null if there are no notaries. */
+    public Party select(UniqueIdentifier linearId) {
+        if (pool.getNotaries().isEmpty()) {
+            refresh();
+        }
+        return pool.select(strategy, linearId);
+    }
+
+    public List<Party> getNotaries() {
+        if (pool.getNotaries().isEmpty()) {
+            refresh();
+        }
+        return pool.getNotaries();
+    }
+
+    public void recordLatency(Party notary, Duration latency) {
+        pool.recordLatency(notary, latency);
+    }
+
+    public NotaryPool.Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(NotaryPool.Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    // An unknown strategy must not stop the service, and with it every flow that issues, from being created.
+    private static NotaryPool.Strategy strategyFromProperty() {
+        final String name = System.getProperty(STRATEGY_PROPERTY, NotaryPool.Strategy.ROUND_ROBIN.name());
+        try {
+            return NotaryPool.Strategy.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown {} {}, using {}.", STRATEGY_PROPERTY, name, NotaryPool.Strategy.ROUND_ROBIN);
+            return NotaryPool.Strategy.ROUND_ROBIN;
+        }
+    }
+
+    private void refresh() {
+        pool.update(networkMapCache.getNotaryIdentities());
+    }
+}
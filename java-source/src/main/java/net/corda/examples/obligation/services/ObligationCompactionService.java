@@ -0,0 +1,71 @@
+package net.corda.examples.obligation.services;
+
+import net.corda.core.flows.FlowException;
+import net.corda.core.node.AppServiceHub;
+import net.corda.core.node.services.CordaService;
+import net.corda.core.serialization.SingletonSerializeAsToken;
+import net.corda.examples.obligation.flows.MergeObligations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically runs {@link MergeObligations} so that frequent small issuances don't leave the vault full of tiny
+ * obligations.
+ *
+ * Compaction is off unless the {@code obligation.compaction.intervalSeconds} system property is set. Each run merges at
+ * most {@code obligation.compaction.batchSize} obligations, 100 by default, and runs are repeated until there is
+ * nothing left to merge or a run fails.
+ *
+ * Only obligations we borrowed are merged. Both sides run this service, and if the lender merged too the two runs
+ * would try to consume the same obligations and one would fail as a double spend.
+ */
+@CordaService
+public class ObligationCompactionService extends SingletonSerializeAsToken {
+    public static final String INTERVAL_PROPERTY = "obligation.compaction.intervalSeconds";
+    public static final String BATCH_SIZE_PROPERTY = "obligation.compaction.batchSize";
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(ObligationCompactionService.class);
+
+    private final AppServiceHub services;
+    private final int batchSize;
+
+    public ObligationCompactionService(AppServiceHub services) {
+        this.services = services;
+        this.batchSize = Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE);
+
+        final long intervalSeconds = Long.getLong(INTERVAL_PROPERTY, 0L);
+        if (intervalSeconds > 0) {
+            final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "obligation-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::compact, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /** Merges obligations in batches until there are none left to merge. Returns the number of merges committed. */
+    public int compact() {
+        int merges = 0;
+        while (true) {
+            try {
+                services.startFlow(new MergeObligations.Initiator(batchSize, true)).getReturnValue().get();
+                merges++;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof FlowException)) {
+                    logger.warn("Obligation compaction failed.", e.getCause());
+                }
+                return merges;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return merges;
+            }
+        }
+    }
+}
@@ -1,7 +1,7 @@
 "use strict";
 
 // Define your backend here.
-angular.module('demoAppModule', ['ui.bootstrap']).controller('DemoAppCtrl', function($http, $location, $uibModal) {
+angular.module('demoAppModule', ['ui.bootstrap']).controller('DemoAppCtrl', function($http, $location, $uibModal, $scope) {
     const demoApp = this;
 
     const apiBaseURL = "/api/obligation/";
@@ -72,17 +72,48 @@ angular.module('demoAppModule', ['ui.bootstrap']).controller('DemoAppCtrl', func
         settleModal.result.then(() => {}, () => {});
     };
 
+    // The unconsumed IOUs, keyed by state reference so that vault updates can be applied in place.
+    let iousByRef = {};
+    const refKey = (ref) => ref.txhash + "(" + ref.index + ")";
+    const showIous = () => demoApp.ious = Object.keys(iousByRef).map((key) => iousByRef[key]);
+
     /** Refreshes the front-end. */
     demoApp.refresh = () => {
         // Update the list of IOUs.
-        $http.get(apiBaseURL + "obligations").then((response) => demoApp.ious =
-            Object.keys(response.data).map((key) => response.data[key].state.data));
+        $http.get(apiBaseURL + "obligations").then((response) => {
+            iousByRef = {};
+            Object.keys(response.data).forEach((key) =>
+                iousByRef[refKey(response.data[key].ref)] = response.data[key].state.data);
+            showIous();
+        });
 
         // Update the cash balances.
         $http.get(apiBaseURL + "cash-balances").then((response) => demoApp.cashBalances =
             response.data);
-    }
+    };
+
+    /** Applies the changes pushed by the node as they happen, rather than re-fetching everything. */
+    const listenForVaultUpdates = () => {
+        const updates = new EventSource(apiBaseURL + "vault-updates");
+
+        updates.addEventListener("obligations", (event) => $scope.$apply(() => {
+            const delta = JSON.parse(event.data);
+            delta.consumed.forEach((ref) => delete iousByRef[refKey(ref)]);
+            delta.produced.forEach((stateAndRef) => iousByRef[refKey(stateAndRef.ref)] = stateAndRef.state.data);
+            showIous();
+        }));
+
+        updates.addEventListener("cash", (event) => $scope.$apply(() => {
+            const delta = JSON.parse(event.data);
+            demoApp.cashBalances = Object.assign({}, demoApp.cashBalances, delta.balances);
+        }));
+
+        // Sent when the server's copy of the vault has been rebuilt, after which earlier deltas can't be trusted.
+        updates.addEventListener("reset", () => $scope.$apply(demoApp.refresh));
+    };
 
+    // Start listening before fetching, so that no update is missed in between.
+    listenForVaultUpdates();
     demoApp.refresh();
 });
 
@@ -0,0 +1,51 @@
+package net.corda.examples.obligation
+
+import net.corda.core.identity.Party
+import org.junit.Test
+import java.util.function.Function
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+class BulkOperationsTests {
+
+    @Test
+    fun `operations can be given as a JSON array`() {
+        val operations = BulkOperations.parseJson("""
+            [{"op": "issue-obligation", "party": "PartyB", "amount": 10, "currency": "USD"},
+             {"op": "transfer-obligation", "id": "abc", "party": "PartyC"}]""")
+        assertEquals(listOf("issue-obligation", "transfer-obligation"), operations.map { it.op })
+        assertEquals(10, operations[0].amount)
+        assertNull(operations[1].amount)
+        assertEquals("PartyC", operations[1].party)
+    }
+
+    @Test
+    fun `operations can be given as CSV with an optional header`() {
+        val operations = BulkOperations.parseCsv("""
+            op,id,party,amount,currency
+            issue-obligation,,PartyB,10,USD
+            settle-obligation,abc,,5,USD
+            """.trimIndent())
+        assertEquals(listOf("issue-obligation", "settle-obligation"), operations.map { it.op })
+        assertNull(operations[0].id)
+        assertEquals("abc", operations[1].id)
+        assertEquals(5, operations[1].amount)
+    }
+
+    @Test
+    fun `malformed operations are rejected`() {
+        assertFailsWith<IllegalArgumentException> { BulkOperations.parseJson("""{"op": "issue-obligation"}""") }
+        assertFailsWith<IllegalArgumentException> { BulkOperations.parseJson("""[{"party": "PartyB"}]""") }
+        assertFailsWith<IllegalArgumentException> { BulkOperations.parseCsv("issue-obligation,,PartyB,ten,USD") }
+    }
+
+    @Test
+    fun `an unknown currency is reported by name`() {
+        val operation = BulkOperations.parseJson("""[{"op": "issue-obligation", "party": "PartyB", "amount": 10, "currency": "XYZ"}]""").single()
+        val error = assertFailsWith<IllegalArgumentException> {
+            operation.start(null, Function<String, Party> { throw AssertionError("No party should be looked up.") })
+        }
+        assertEquals("Unknown currency XYZ.", error.message)
+    }
+}
@@ -0,0 +1,89 @@
+package net.corda.examples.obligation
+
+import net.corda.core.flows.StateMachineRunId
+import net.corda.core.internal.concurrent.openFuture
+import net.corda.core.messaging.FlowProgressHandleImpl
+import org.glassfish.jersey.server.ChunkedOutput
+import org.junit.Test
+import rx.subjects.PublishSubject
+import java.util.*
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class FlowProgressStreamsTests {
+    private val streams = FlowProgressStreams()
+
+    // Records what is written to it rather than sending it to a client.
+    private class RecordingOutput : ChunkedOutput<String>(String::class.java) {
+        val chunks = StringBuilder()
+        var closed = false
+
+        override fun write(chunk: String) {
+            chunks.append(chunk)
+        }
+
+        override fun close() {
+            closed = true
+        }
+
+        override fun isClosed() = closed
+    }
+
+    private fun subscribe(flowId: UUID) = RecordingOutput().also { assertTrue(streams.subscribe(flowId, it)) }
+
+    private fun streamToString(flowId: UUID): String {
+        val output = subscribe(flowId)
+        assertTrue(output.closed)
+        return output.chunks.toString()
+    }
+
+    @Test
+    fun `steps are replayed and the stream ends with the result`() {
+        val progress = PublishSubject.create<String>()
+        val result = openFuture<String>()
+        val flowId = streams.track(FlowProgressHandleImpl(StateMachineRunId.createRandom(), result, progress)) { "Result:\n$it" }
+
+        progress.onNext("Building and verifying transaction.")
+        progress.onNext("Signing transaction.")
+        result.set("done")
+
+        assertEquals(
+                "event: progress\ndata: Building and verifying transaction.\n\n" +
+                "event: progress\ndata: Signing transaction.\n\n" +
+                "event: done\ndata: Result:\ndata: done\n\n",
+                streamToString(flowId))
+    }
+
+    @Test
+    fun `steps are pushed to subscribers as they happen`() {
+        val progress = PublishSubject.create<String>()
+        val result = openFuture<String>()
+        val flowId = streams.track(FlowProgressHandleImpl(StateMachineRunId.createRandom(), result, progress)) { it }
+
+        val output = subscribe(flowId)
+        assertEquals("", output.chunks.toString())
+        progress.onNext("Signing transaction.")
+        assertEquals("event: progress\ndata: Signing transaction.\n\n", output.chunks.toString())
+        assertFalse(output.closed)
+
+        result.set("done")
+        assertTrue(output.closed)
+    }
+
+    @Test
+    fun `the stream ends with an error if the flow fails`() {
+        val result = openFuture<String>()
+        val flowId = streams.track(FlowProgressHandleImpl(StateMachineRunId.createRandom(), result, PublishSubject.create<String>())) { it }
+
+        result.setException(IllegalStateException("Boom."))
+
+        assertEquals("event: error\n", streamToString(flowId).lineSequence().first() + "\n")
+    }
+
+    @Test
+    fun `unknown flows have no stream`() {
+        assertNull(streams.stream(UUID.randomUUID()))
+    }
+}
@@ -15,6 +15,10 @@ fun main(args: Array<String>) {
                 providedName = CordaX500Name("Controller", "London", "GB"),
                 advertisedServices = setOf(ServiceInfo(SimpleNotaryService.type))
         )
+        startNode(
+                providedName = CordaX500Name("NotaryB", "Frankfurt", "DE"),
+                advertisedServices = setOf(ServiceInfo(SimpleNotaryService.type))
+        )
 
         val (nodeA, nodeB, nodeC) = listOf(
                 startNode(providedName = CordaX500Name("PartyA", "London", "GB"), rpcUsers = listOf(user)),
@@ -0,0 +1,68 @@
+package net.corda.examples.obligation
+
+import net.corda.core.contracts.StateAndRef
+import net.corda.examples.obligation.flows.ObligationTests
+import net.corda.finance.POUNDS
+import org.junit.Test
+import java.lang.reflect.Proxy
+import javax.ws.rs.core.HttpHeaders
+import javax.ws.rs.core.Response
+import kotlin.test.assertEquals
+
+class ObligationApiTests : ObligationTests() {
+
+    // A request with no headers, so responses are plain JSON.
+    private val noHeaders = Proxy.newProxyInstance(
+            HttpHeaders::class.java.classLoader, arrayOf(HttpHeaders::class.java)) { _, _, _ -> null } as HttpHeaders
+
+    private fun ObligationApi.page(page: Int, pageSize: Int, sort: String = "recorded") =
+            obligations(page, pageSize, sort, null, noHeaders)
+
+    @Suppress("UNCHECKED_CAST")
+    private fun Response.amounts() = (entity as List<StateAndRef<Obligation>>).map { it.state.data.amount }
+
+    @Test
+    fun `obligations are paged with the total in a header`() {
+        listOf(10, 20, 30, 40, 50).forEach { issueObligation(a, b, it.POUNDS) }
+        network.waitQuiescent()
+        val api = ObligationApi(a.rpcOps)
+
+        val second = api.page(2, 2, "-amount")
+        assertEquals(200, second.status)
+        assertEquals(5L, second.headers.getFirst(ObligationApi.TOTAL_COUNT_HEADER))
+        assertEquals(listOf(30.POUNDS, 20.POUNDS), second.amounts())
+
+        assertEquals(listOf(10.POUNDS), api.page(3, 2, "-amount").amounts())
+
+        val beyond = api.page(4, 2, "-amount")
+        assertEquals(emptyList(), beyond.amounts())
+        assertEquals(5L, beyond.headers.getFirst(ObligationApi.TOTAL_COUNT_HEADER))
+    }
+
+    @Test
+    fun `sorted pages include obligations issued after they were first read`() {
+        listOf(10, 30).forEach { issueObligation(a, b, it.POUNDS) }
+        network.waitQuiescent()
+        val api = ObligationApi(a.rpcOps)
+        assertEquals(listOf(30.POUNDS, 10.POUNDS), api.page(1, 10, "-amount").amounts())
+
+        issueObligation(a, b, 20.POUNDS)
+        network.waitQuiescent()
+        assertEquals(listOf(30.POUNDS, 20.POUNDS, 10.POUNDS), api.page(1, 10, "-amount").amounts())
+        assertEquals(listOf(20.POUNDS), api.page(2, 1, "-amount").amounts())
+    }
+
+    @Test
+    fun `invalid paging and sorting are rejected`() {
+        val api = ObligationApi(a.rpcOps)
+
+        assertEquals(400, api.page(0, 10).status)
+        assertEquals(400, api.page(1, 0).status)
+        assertEquals(400, api.page(1, ObligationApi.MAX_OBLIGATIONS_PAGE_SIZE + 1).status)
+        assertEquals(200, api.page(1, ObligationApi.MAX_OBLIGATIONS_PAGE_SIZE).status)
+
+        val badSort = api.page(1, 10, "lender")
+        assertEquals(400, badSort.status)
+        assertEquals("Cannot sort obligations by lender.", badSort.entity)
+    }
+}
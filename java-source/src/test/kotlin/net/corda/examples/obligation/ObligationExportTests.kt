@@ -0,0 +1,46 @@
+package net.corda.examples.obligation
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import net.corda.core.contracts.StateRef
+import net.corda.examples.obligation.flows.ObligationTests
+import net.corda.examples.obligation.services.IdentityCache
+import net.corda.finance.POUNDS
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.time.Instant
+import kotlin.test.assertEquals
+
+class ObligationExportTests : ObligationTests() {
+
+    private fun exportedStateRefs(asOf: Instant): Set<String> {
+        val output = ByteArrayOutputStream()
+        ObligationExport(a.rpcOps, IdentityCache { a.rpcOps.wellKnownPartyFromAnonymous(it) }, ObligationMetrics(), asOf)
+                .write(output)
+        return output.toString("UTF-8").lines().filter { it.isNotEmpty() }
+                .map { ObjectMapper().readValue(it, Map::class.java)["stateRef"] as String }
+                .toSet()
+    }
+
+    private fun settledRef(obligation: Obligation, amount: Int): StateRef {
+        val settleTransaction = settleObligation(obligation.linearId, a, amount.POUNDS)
+        network.waitQuiescent()
+        return settleTransaction.tx.outRefsOfType<Obligation>().single().ref
+    }
+
+    @Test
+    fun `the export holds the obligations that were unconsumed when it started`() {
+        val first = issueObligation(a, b, 100.POUNDS).tx.outRefsOfType<Obligation>().single()
+        val second = issueObligation(a, b, 50.POUNDS).tx.outRefsOfType<Obligation>().single()
+        network.waitQuiescent()
+        selfIssueCash(a, 100.POUNDS)
+        network.waitQuiescent()
+
+        // The second obligation is part paid before the export starts, and the first one after.
+        val secondAfterPayment = settledRef(second.state.data, 20)
+        val asOf = a.services.clock.instant()
+        Thread.sleep(10)
+        settledRef(first.state.data, 30)
+
+        assertEquals(setOf(first.ref.toString(), secondAfterPayment.toString()), exportedStateRefs(asOf))
+    }
+}
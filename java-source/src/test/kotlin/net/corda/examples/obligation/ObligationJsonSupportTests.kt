@@ -0,0 +1,45 @@
+package net.corda.examples.obligation
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import net.corda.core.contracts.StateAndRef
+import net.corda.core.contracts.StateRef
+import net.corda.core.contracts.TransactionState
+import net.corda.core.crypto.SecureHash
+import net.corda.core.crypto.toStringShort
+import net.corda.core.identity.AnonymousParty
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.POUNDS
+import net.corda.testing.ALICE
+import net.corda.testing.BOB_PUBKEY
+import net.corda.testing.DUMMY_NOTARY
+import org.junit.Test
+import kotlin.test.assertEquals
+
+class ObligationJsonSupportTests {
+    private val mapper = ObjectMapper().registerModule(ObligationJsonSupport.createCompactModule())
+    private val obligation = Obligation(10.POUNDS, ALICE, AnonymousParty(BOB_PUBKEY), 2.POUNDS)
+
+    @Test
+    fun `obligation is written as a flat object`() {
+        val json = mapper.readTree(mapper.writeValueAsString(obligation))
+
+        assertEquals(obligation.linearId.id.toString(), json["linearId"].asText())
+        assertEquals(ALICE.name.toString(), json["lender"].asText())
+        assertEquals(BOB_PUBKEY.toStringShort(), json["borrower"].asText())
+        assertEquals("GBP", json["currency"].asText())
+        assertEquals(1000L, json["amount"].asLong())
+        assertEquals(200L, json["paid"].asLong())
+    }
+
+    @Test
+    fun `state and ref is written inline without the transaction state`() {
+        val ref = StateRef(SecureHash.zeroHash, 0)
+        val stateAndRef = StateAndRef(TransactionState(obligation, OBLIGATION_CONTRACT_ID, DUMMY_NOTARY), ref)
+        val json = mapper.readTree(mapper.writeValueAsString(stateAndRef))
+
+        assertEquals(ref.toString(), json["ref"].asText())
+        assertEquals(obligation.linearId.id.toString(), json["linearId"].asText())
+        assertEquals(null, json["notary"])
+        assertEquals(null, json["state"])
+    }
+}
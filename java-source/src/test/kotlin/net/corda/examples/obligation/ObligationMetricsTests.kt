@@ -0,0 +1,74 @@
+package net.corda.examples.obligation
+
+import net.corda.core.flows.FlowInitiator
+import net.corda.core.flows.StateMachineRunId
+import net.corda.core.messaging.StateMachineInfo
+import net.corda.core.messaging.StateMachineUpdate
+import net.corda.core.utilities.Try
+import net.corda.examples.obligation.flows.IssueObligation
+import org.junit.Test
+import java.io.StringWriter
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class ObligationMetricsTests {
+    private val metrics = ObligationMetrics()
+
+    private fun text() = StringWriter().also { metrics.write(it) }.toString()
+
+    private fun started(id: StateMachineRunId) = StateMachineUpdate.Added(
+            StateMachineInfo(id, IssueObligation.Initiator::class.java.name, FlowInitiator.Shell, null))
+
+    @Test
+    fun `flow class names drop the package`() {
+        assertEquals("IssueObligation.Initiator", ObligationMetrics.flowName(IssueObligation.Initiator::class.java.name))
+    }
+
+    @Test
+    fun `flows are counted by class and outcome`() {
+        val first = StateMachineRunId.createRandom()
+        val second = StateMachineRunId.createRandom()
+        metrics.apply(started(first))
+        metrics.apply(started(second))
+        metrics.apply(StateMachineUpdate.Removed(first, Try.Failure<Any>(IllegalStateException())))
+
+        val text = text()
+        assertTrue("obligation_flows_started_total{flow=\"IssueObligation.Initiator\"} 2" in text)
+        assertTrue("obligation_flows_completed_total{flow=\"IssueObligation.Initiator\",outcome=\"failure\"} 1" in text)
+        assertTrue("obligation_flows_in_flight{flow=\"IssueObligation.Initiator\"} 1" in text)
+    }
+
+    @Test
+    fun `histogram buckets are cumulative`() {
+        metrics.recordRequest("obligation/me", "GET", 200, 3_000_000)
+        metrics.recordRequest("obligation/me", "GET", 200, 2_000_000_000)
+
+        val text = text()
+        val labels = "route=\"obligation/me\",method=\"GET\",code=\"200\""
+        assertTrue("obligation_http_request_duration_seconds_bucket{$labels,le=\"0.005\"} 1" in text)
+        assertTrue("obligation_http_request_duration_seconds_bucket{$labels,le=\"1\"} 1" in text)
+        assertTrue("obligation_http_request_duration_seconds_bucket{$labels,le=\"2.5\"} 2" in text)
+        assertTrue("obligation_http_request_duration_seconds_bucket{$labels,le=\"+Inf\"} 2" in text)
+        assertTrue("obligation_http_request_duration_seconds_count{$labels} 2" in text)
+    }
+
+    @Test
+    fun `vault queries record their result size`() {
+        val result = metrics.timeVaultQuery("test", { listOf(1, 2, 3) }, { it.size.toLong() })
+
+        assertEquals(listOf(1, 2, 3), result)
+        assertTrue("obligation_vault_query_states_bucket{query=\"test\",le=\"1\"} 0" in text())
+        assertTrue("obligation_vault_query_states_bucket{query=\"test\",le=\"10\"} 1" in text())
+    }
+
+    @Test
+    fun `cache hit ratio is read when written`() {
+        var hits = 0L
+        metrics.registerCache("identities", { hits }, { 1L })
+        hits = 3
+
+        val text = text()
+        assertTrue("obligation_cache_hits_total{cache=\"identities\"} 3" in text)
+        assertTrue("obligation_cache_hit_ratio{cache=\"identities\"} 0.75" in text)
+    }
+}
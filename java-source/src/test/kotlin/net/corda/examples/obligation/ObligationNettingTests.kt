@@ -0,0 +1,69 @@
+package net.corda.examples.obligation
+
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.testing.ALICE
+import net.corda.testing.BOB
+import net.corda.testing.CHARLIE
+import net.corda.testing.MEGA_CORP
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class ObligationNettingTests {
+
+    @Test
+    fun `a cycle cancels out completely`() {
+        val obligations = listOf(
+                Obligation(10.DOLLARS, BOB, ALICE),
+                Obligation(10.DOLLARS, CHARLIE, BOB),
+                Obligation(10.DOLLARS, ALICE, CHARLIE))
+        assertTrue(ObligationNetting.netPositions(obligations).isEmpty())
+        assertTrue(ObligationNetting.net(obligations).isEmpty())
+    }
+
+    @Test
+    fun `a chain collapses to a single obligation`() {
+        // Alice owes Bob, who owes Charlie.
+        val obligations = listOf(
+                Obligation(10.DOLLARS, BOB, ALICE),
+                Obligation(10.DOLLARS, CHARLIE, BOB))
+        val residuals = ObligationNetting.net(obligations)
+        assertEquals(1, residuals.size)
+        assertEquals(CHARLIE, residuals.single().lender)
+        assertEquals(ALICE, residuals.single().borrower)
+        assertEquals(10.DOLLARS, residuals.single().amount)
+    }
+
+    @Test
+    fun `net positions are preserved and only outstanding amounts count`() {
+        val obligations = listOf(
+                Obligation(10.DOLLARS, BOB, ALICE).pay(4.DOLLARS),
+                Obligation(5.DOLLARS, ALICE, BOB),
+                Obligation(7.DOLLARS, CHARLIE, ALICE),
+                Obligation(3.DOLLARS, MEGA_CORP, CHARLIE),
+                Obligation(2.DOLLARS, BOB, MEGA_CORP))
+        val residuals = ObligationNetting.net(obligations)
+        assertEquals(ObligationNetting.netPositions(obligations), ObligationNetting.netPositions(residuals))
+        assertTrue(residuals.size < ObligationNetting.netPositions(obligations).size)
+        assertTrue(residuals.all { it.paid.quantity == 0L && it.amount.quantity > 0 })
+    }
+
+    @Test
+    fun `netting is deterministic`() {
+        val obligations = listOf(
+                Obligation(10.DOLLARS, BOB, ALICE),
+                Obligation(10.DOLLARS, CHARLIE, MEGA_CORP))
+        val first = ObligationNetting.net(obligations).map { Triple(it.lender, it.borrower, it.amount) }
+        val second = ObligationNetting.net(obligations.reversed()).map { Triple(it.lender, it.borrower, it.amount) }
+        assertEquals(first, second)
+    }
+
+    @Test
+    fun `obligations in different currencies cannot be netted together`() {
+        assertFailsWith<IllegalArgumentException> {
+            ObligationNetting.net(listOf(Obligation(10.DOLLARS, BOB, ALICE), Obligation(10.POUNDS, ALICE, BOB)))
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package net.corda.examples.obligation
+
+import net.corda.core.identity.AbstractParty
+import net.corda.core.node.services.queryBy
+import net.corda.examples.obligation.flows.ObligationTests
+import net.corda.finance.GBP
+import net.corda.finance.POUNDS
+import net.corda.node.internal.StartedNode
+import net.corda.testing.chooseIdentity
+import net.corda.testing.node.MockNetwork.MockNode
+import org.junit.Test
+import java.util.Currency
+import java.util.function.Predicate
+import kotlin.test.assertEquals
+
+class ObligationOwedTests : ObligationTests() {
+
+    private fun owedBy(node: StartedNode<MockNode>): Map<Currency, Long> {
+        val me = node.info.chooseIdentity()
+        val isMe = Predicate<AbstractParty> { node.services.identityService.wellKnownPartyFromAnonymous(it) == me }
+        val obligations = node.database.transaction {
+            node.services.vaultService.queryBy<Obligation>().states.map { it.state.data }
+        }
+        return ObligationView.owedPerCurrency(obligations, isMe)
+    }
+
+    @Test
+    fun `only what is outstanding on confidential obligations we borrowed is owed`() {
+        val aBorrowed = issueObligation(a, b, 1000.POUNDS).tx.outputsOfType<Obligation>().single()
+        issueObligation(b, a, 300.POUNDS)
+        network.waitQuiescent()
+
+        selfIssueCash(a, 400.POUNDS)
+        settleObligation(aBorrowed.linearId, a, 400.POUNDS)
+        network.waitQuiescent()
+
+        assertEquals(mapOf(GBP to 600_00L), owedBy(a))
+        assertEquals(mapOf(GBP to 300_00L), owedBy(b))
+    }
+
+    @Test
+    fun `nothing is owed once an obligation is fully paid`() {
+        val aBorrowed = issueObligation(a, b, 500.POUNDS).tx.outputsOfType<Obligation>().single()
+        network.waitQuiescent()
+
+        selfIssueCash(a, 500.POUNDS)
+        settleObligation(aBorrowed.linearId, a, 500.POUNDS)
+        network.waitQuiescent()
+
+        assertEquals(emptyMap(), owedBy(a))
+        assertEquals(emptyMap(), owedBy(b))
+    }
+}
@@ -0,0 +1,59 @@
+package net.corda.examples.obligation
+
+import net.corda.core.contracts.StateAndRef
+import net.corda.core.contracts.StateRef
+import net.corda.core.contracts.TransactionState
+import net.corda.core.crypto.SecureHash
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.testing.ALICE
+import net.corda.testing.BOB
+import net.corda.testing.DUMMY_NOTARY
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class ObligationViewTests {
+    private val first = recorded(Obligation(10.DOLLARS, ALICE, BOB).pay(5.DOLLARS), 0)
+    private val second = recorded(Obligation(20.DOLLARS, ALICE, BOB), 1)
+    private val third = recorded(Obligation(15.POUNDS, ALICE, BOB), 2)
+    private val all = listOf(third, first, second)
+
+    private fun recorded(obligation: Obligation, sequence: Long): ObligationView.Recorded {
+        val state = StateAndRef(TransactionState(obligation, OBLIGATION_CONTRACT_ID, DUMMY_NOTARY), StateRef(SecureHash.randomSHA256(), 0))
+        return ObligationView.Recorded(state, sequence, false)
+    }
+
+    private fun sorted(sort: String) = all.sortedWith(ObligationView.comparator(ObligationApi.parseSort(sort)))
+
+    @Test
+    fun `obligations are sorted by recorded time by default`() {
+        assertEquals(listOf(first, second, third), sorted("recorded"))
+        assertEquals(listOf(third, second, first), sorted("-recorded"))
+    }
+
+    @Test
+    fun `obligations can be sorted by amount and outstanding amount`() {
+        assertEquals(listOf(first, third, second), sorted("amount"))
+        assertEquals(listOf(second, third, first), sorted("-outstanding"))
+    }
+
+    @Test
+    fun `later columns break ties in earlier ones`() {
+        assertEquals(listOf(third, second, first), sorted("currency,-amount"))
+    }
+
+    @Test
+    fun `blank sort columns are ignored`() {
+        assertEquals(listOf(first, third, second), sorted(" amount, ,"))
+    }
+
+    @Test
+    fun `unknown sort columns are rejected`() {
+        val unknown = assertFailsWith<IllegalArgumentException> { ObligationApi.parseSort("amount,lender") }
+        assertEquals("Cannot sort obligations by lender.", unknown.message)
+        val descending = assertFailsWith<IllegalArgumentException> { ObligationApi.parseSort("-borrower") }
+        assertEquals("Cannot sort obligations by borrower.", descending.message)
+    }
+}
@@ -0,0 +1,40 @@
+package net.corda.examples.obligation
+
+import net.corda.core.identity.Party
+import net.corda.core.node.NodeInfo
+import net.corda.core.node.services.NetworkMapCache.MapChange
+import net.corda.core.utilities.NetworkHostAndPort
+import net.corda.testing.ALICE
+import net.corda.testing.BOB
+import net.corda.testing.CHARLIE
+import net.corda.testing.DUMMY_NOTARY
+import net.corda.testing.getTestPartyAndCertificate
+import org.junit.Test
+import kotlin.test.assertEquals
+
+class PeerDirectoryTests {
+    private val directory = PeerDirectory(ALICE)
+
+    private fun nodeInfo(party: Party) = NodeInfo(
+            listOf(NetworkHostAndPort("localhost", 10000)), listOf(getTestPartyAndCertificate(party)), 1, 1L)
+
+    @Test
+    fun `our own node and the notaries are not peers`() {
+        directory.seed(listOf(nodeInfo(ALICE), nodeInfo(BOB), nodeInfo(DUMMY_NOTARY)), listOf(DUMMY_NOTARY))
+        assertEquals(listOf(BOB.name.organisation), directory.search(null))
+    }
+
+    @Test
+    fun `peers can be searched by prefix ignoring case`() {
+        directory.seed(listOf(nodeInfo(BOB), nodeInfo(CHARLIE)), emptyList())
+        assertEquals(listOf(CHARLIE.name.organisation), directory.search(CHARLIE.name.organisation.take(2).toLowerCase()))
+    }
+
+    @Test
+    fun `peers follow network map changes`() {
+        directory.seed(listOf(nodeInfo(BOB)), emptyList())
+        directory.apply(MapChange.Added(nodeInfo(CHARLIE)), emptyList())
+        directory.apply(MapChange.Removed(nodeInfo(BOB)), emptyList())
+        assertEquals(listOf(CHARLIE.name.organisation), directory.search(""))
+    }
+}
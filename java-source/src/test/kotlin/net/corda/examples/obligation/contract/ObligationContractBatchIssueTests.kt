@@ -0,0 +1,105 @@
+package net.corda.examples.obligation.contract
+
+import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.ObligationContract
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.testing.*
+import org.junit.Test
+
+class ObligationContractBatchIssueTests : ObligationContractUnitTests() {
+
+    @Test
+    fun `batch issue transaction must have no inputs`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { DummyState() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { oneDollarObligation }
+                this `fails with` "No inputs should be consumed when issuing obligations."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { oneDollarObligation }
+                this.verifies()
+            }
+        }
+    }
+
+    @Test
+    fun `batch issue transaction may create many obligations to many lenders`() {
+        ledger {
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                this `fails with` "At least one obligation state should be created when batch issuing obligations."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { oneDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { DummyState() }
+                this `fails with` "Only obligation states should be created when batch issuing obligations."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(20.DOLLARS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(30.POUNDS, CHARLIE, BOB) }
+                this.verifies()
+            }
+        }
+    }
+
+    @Test
+    fun `every batch issued obligation must be valid`() {
+        ledger {
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { oneDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(0.POUNDS, ALICE, BOB) }
+                this `fails with` "A newly issued obligation must have a positive amount."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, ALICE, BOB, 1.POUNDS) }
+                this `fails with` "A newly issued obligation must have nothing paid."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { oneDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, ALICE, ALICE) }
+                this `fails with` "The lender and borrower cannot be the same identity."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { oneDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { oneDollarObligation }
+                this `fails with` "Each newly issued obligation must have a distinct linear ID."
+            }
+        }
+    }
+
+    @Test
+    fun `all lenders and borrowers must sign batch issue transaction`() {
+        ledger {
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(30.POUNDS, CHARLIE, BOB) }
+                this `fails with` "All lenders and borrowers together only may sign a batch obligation issue transaction."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY, MINI_CORP_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(30.POUNDS, CHARLIE, BOB) }
+                this `fails with` "All lenders and borrowers together only may sign a batch obligation issue transaction."
+            }
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.BatchIssue() }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(30.POUNDS, CHARLIE, BOB) }
+                this.verifies()
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package net.corda.examples.obligation.contract
+
+import net.corda.core.contracts.Amount
+import net.corda.core.identity.AbstractParty
+import net.corda.core.utilities.OpaqueBytes
+import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.ObligationContract
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.finance.`issued by`
+import net.corda.finance.contracts.asset.Cash
+import net.corda.testing.*
+import org.junit.Test
+import java.util.*
+
+class ObligationContractBatchSettleTests : ObligationContractUnitTests() {
+
+    private val defaultRef = OpaqueBytes(ByteArray(1))
+    private val defaultIssuer = MEGA_CORP.ref(defaultRef)
+    private val fiveDollarObligation = Obligation(5.DOLLARS, ALICE, BOB)
+
+    private fun createCashState(amount: Amount<Currency>, owner: AbstractParty): Cash.State {
+        return Cash.State(amount = amount `issued by` defaultIssuer, owner = owner)
+    }
+
+    @Test
+    fun `must have at least one input obligation in one currency`() {
+        ledger {
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this `fails with` "There must be at least one input obligation."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this `fails with` "All obligations settled together must be in the same currency."
+            }
+        }
+    }
+
+    @Test
+    fun `cash paid to the lender must match the payments allocated`() {
+        val inputCash = createCashState(20.DOLLARS, BOB)
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.pay(4.DOLLARS) }
+                input(OBLIGATION_CONTRACT_ID) { inputCash }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(8.DOLLARS, ALICE) }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(12.DOLLARS, BOB) }
+                command(BOB_PUBKEY) { Cash.Commands.Move() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this `fails with` "The cash paid to each lender must equal the payments allocated to their obligations."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.pay(4.DOLLARS) }
+                input(OBLIGATION_CONTRACT_ID) { inputCash }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(9.DOLLARS, ALICE) }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(11.DOLLARS, BOB) }
+                command(BOB_PUBKEY) { Cash.Commands.Move() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this.verifies()
+            }
+        }
+    }
+
+    @Test
+    fun `partially settled obligations may only change their paid property`() {
+        val inputCash = createCashState(20.DOLLARS, BOB)
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.pay(4.DOLLARS).withNewLender(CHARLIE) }
+                input(OBLIGATION_CONTRACT_ID) { inputCash }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(4.DOLLARS, ALICE) }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(16.DOLLARS, BOB) }
+                command(BOB_PUBKEY) { Cash.Commands.Move() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this `fails with` "Only the paid property may change when settling."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.pay(10.DOLLARS) }
+                input(OBLIGATION_CONTRACT_ID) { inputCash }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(10.DOLLARS, ALICE) }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(10.DOLLARS, BOB) }
+                command(BOB_PUBKEY) { Cash.Commands.Move() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this `fails with` "A fully settled obligation must not have an output."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { inputCash }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(10.DOLLARS, ALICE) }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(10.DOLLARS, BOB) }
+                command(BOB_PUBKEY) { Cash.Commands.Move() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this `fails with` "Every output obligation must have a matching input."
+            }
+        }
+    }
+
+    @Test
+    fun `lenders and borrowers must sign`() {
+        val inputCash = createCashState(15.DOLLARS, BOB)
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { inputCash }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(15.DOLLARS, ALICE) }
+                command(BOB_PUBKEY) { Cash.Commands.Move() }
+                command(BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this `fails with` "The lenders and borrowers together only must sign a batch obligation settle transaction."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { inputCash }
+                output(OBLIGATION_CONTRACT_ID) { createCashState(15.DOLLARS, ALICE) }
+                command(BOB_PUBKEY) { Cash.Commands.Move() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.BatchSettle() }
+                this.verifies()
+            }
+        }
+    }
+}
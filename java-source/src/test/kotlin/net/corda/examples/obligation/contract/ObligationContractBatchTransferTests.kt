@@ -0,0 +1,100 @@
+package net.corda.examples.obligation.contract
+
+import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.ObligationContract
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.DOLLARS
+import net.corda.testing.*
+import org.junit.Test
+
+class ObligationContractBatchTransferTests : ObligationContractUnitTests() {
+    private val otherObligation = Obligation(5.DOLLARS, ALICE, MINI_CORP)
+
+    @Test
+    fun `must transfer at least one obligation and only obligations`() {
+        ledger {
+            transaction {
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "A batch obligation transfer must consume at least one obligation."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { DummyState() }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "A batch obligation transfer should only consume obligation states."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { otherObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY, MINI_CORP_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "A batch obligation transfer must create one output for each input."
+            }
+        }
+    }
+
+    @Test
+    fun `each obligation must be moved to the same new lender`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { otherObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, MINI_CORP).withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY, MINI_CORP_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "Each input obligation must have an output with the same linear ID."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { otherObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE) }
+                output(OBLIGATION_CONTRACT_ID) { otherObligation.withNewLender(BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY, MINI_CORP_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "All obligations must be transferred to the same new lender."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { otherObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { otherObligation }
+                command(ALICE_PUBKEY, BOB_PUBKEY, MINI_CORP_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "The lender property must change in a transfer."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE).pay(1.DOLLARS) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "Only the lender property may change."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { otherObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE) }
+                output(OBLIGATION_CONTRACT_ID) { otherObligation.withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY, MINI_CORP_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this.verifies()
+            }
+        }
+    }
+
+    @Test
+    fun `all borrowers and old and new lenders must sign`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { otherObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE) }
+                output(OBLIGATION_CONTRACT_ID) { otherObligation.withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "The borrowers, old lenders and new lender only must sign a batch obligation transfer transaction"
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY, MINI_CORP_PUBKEY) { ObligationContract.Commands.BatchTransfer() }
+                this `fails with` "The borrowers, old lenders and new lender only must sign a batch obligation transfer transaction"
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package net.corda.examples.obligation.contract
+
+import net.corda.core.crypto.generateKeyPair
+import net.corda.core.identity.AnonymousParty
+import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.ObligationContract
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.testing.*
+import org.junit.Test
+
+class ObligationContractMergeTests : ObligationContractUnitTests() {
+
+    private val fiveDollarObligation = Obligation(5.DOLLARS, ALICE, BOB).pay(2.DOLLARS)
+    private val mergedObligation = Obligation(15.DOLLARS, ALICE, BOB, 2.DOLLARS)
+
+    @Test
+    fun `must consume at least two obligations and create one`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { tenDollarObligation.pay(0.DOLLARS) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "At least two obligations must be consumed when merging."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { mergedObligation }
+                output(OBLIGATION_CONTRACT_ID) { DummyState() }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "Only one obligation state should be created when merging."
+            }
+        }
+    }
+
+    @Test
+    fun `amounts and payments must be summed in one currency`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(5.POUNDS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(15.DOLLARS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "All obligations merged together must be in the same currency."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(14.DOLLARS, ALICE, BOB, 2.DOLLARS) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "The merged amount must be the sum of the amounts."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(15.DOLLARS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "The merged paid must be the sum of the amounts paid."
+            }
+        }
+    }
+
+    @Test
+    fun `every lender and borrower must sign`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { mergedObligation }
+                command(BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "Every lender and borrower of the merged obligations only must sign a merge transaction."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(15.DOLLARS, CHARLIE, BOB, 2.DOLLARS) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "Every lender and borrower of the merged obligations only must sign a merge transaction."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { fiveDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { mergedObligation }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this.verifies()
+            }
+        }
+    }
+
+    @Test
+    fun `obligations between other parties cannot be merged in`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, CHARLIE, BOB).pay(2.DOLLARS) }
+                output(OBLIGATION_CONTRACT_ID) { mergedObligation }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "All obligations merged together must have the same lender and borrower as the merged obligation."
+            }
+        }
+    }
+
+    @Test
+    fun `confidential obligations must be merged into one of their lenders and borrowers`() {
+        // Alice lends to Bob under two confidential identities. Charlie's confidential identity has no part in either.
+        val firstAlice = AnonymousParty(generateKeyPair().public)
+        val secondAlice = AnonymousParty(generateKeyPair().public)
+        val confidentialCharlie = AnonymousParty(generateKeyPair().public)
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, firstAlice, BOB) }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, secondAlice, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(15.DOLLARS, confidentialCharlie, BOB) }
+                command(firstAlice.owningKey, secondAlice.owningKey, confidentialCharlie.owningKey, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "The merged lender must be the lender of one of the merged obligations."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, firstAlice, BOB) }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, secondAlice, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(15.DOLLARS, firstAlice, confidentialCharlie) }
+                command(firstAlice.owningKey, secondAlice.owningKey, confidentialCharlie.owningKey, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this `fails with` "The merged borrower must be the borrower of one of the merged obligations."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, firstAlice, BOB) }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, secondAlice, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(15.DOLLARS, secondAlice, BOB) }
+                command(firstAlice.owningKey, secondAlice.owningKey, BOB_PUBKEY) { ObligationContract.Commands.Merge() }
+                this.verifies()
+            }
+        }
+    }
+}
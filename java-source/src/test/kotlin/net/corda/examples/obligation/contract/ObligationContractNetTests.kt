@@ -0,0 +1,150 @@
+package net.corda.examples.obligation.contract
+
+import net.corda.core.crypto.generateKeyPair
+import net.corda.core.identity.AnonymousParty
+import net.corda.core.utilities.OpaqueBytes
+import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.ObligationContract
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.finance.`issued by`
+import net.corda.finance.contracts.asset.Cash
+import net.corda.testing.*
+import org.junit.Test
+
+class ObligationContractNetTests : ObligationContractUnitTests() {
+
+    // Alice owes Bob, who owes Charlie.
+    private val aliceOwesBob = Obligation(10.DOLLARS, BOB, ALICE)
+    private val bobOwesCharlie = Obligation(10.DOLLARS, CHARLIE, BOB)
+    private val aliceOwesCharlie = Obligation(10.DOLLARS, CHARLIE, ALICE)
+
+    @Test
+    fun `must consume at least two obligations and only obligations`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "At least two obligations must be consumed when netting."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { aliceOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { Cash.State(10.DOLLARS `issued by` MEGA_CORP.ref(OpaqueBytes(ByteArray(1))), CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "Only obligation states may be created when netting."
+            }
+        }
+    }
+
+    @Test
+    fun `must reduce the number of obligations in one currency`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, BOB, ALICE) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, CHARLIE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "Netting must reduce the number of obligations."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.POUNDS, CHARLIE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "All obligations netted together must be in the same currency."
+            }
+        }
+    }
+
+    @Test
+    fun `must preserve every net position with new unpaid obligations`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(9.DOLLARS, CHARLIE, ALICE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "Netting must not change any party's net position."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(20.DOLLARS, CHARLIE, ALICE).pay(10.DOLLARS) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "A net obligation must have nothing paid."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, CHARLIE, ALICE, 0.DOLLARS, aliceOwesBob.linearId) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "A net obligation must have a new linear ID."
+            }
+        }
+    }
+
+    @Test
+    fun `everyone on the netted obligations must sign`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { aliceOwesCharlie }
+                command(ALICE_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "Every lender and borrower of the netted and net obligations only must sign a net transaction."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                output(OBLIGATION_CONTRACT_ID) { aliceOwesCharlie }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this.verifies()
+            }
+        }
+    }
+
+    @Test
+    fun `a cycle may be cancelled completely`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { aliceOwesBob }
+                input(OBLIGATION_CONTRACT_ID) { bobOwesCharlie }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, ALICE, CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Net() }
+                this.verifies()
+            }
+        }
+    }
+
+    @Test
+    fun `confidential obligations may be netted between well-known parties if nothing more is owed`() {
+        // Alice owes Bob under a confidential identity, and Bob owes Alice's well-known identity.
+        val confidentialAlice = AnonymousParty(generateKeyPair().public)
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, BOB, confidentialAlice) }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(4.DOLLARS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(7.DOLLARS, BOB, ALICE) }
+                command(confidentialAlice.owningKey, ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "Netting must not increase the total outstanding."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, BOB, confidentialAlice) }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(4.DOLLARS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(6.DOLLARS, BOB, ALICE) }
+                command(confidentialAlice.owningKey, BOB_PUBKEY) { ObligationContract.Commands.Net() }
+                this `fails with` "Every lender and borrower of the netted and net obligations only must sign a net transaction."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, BOB, confidentialAlice) }
+                input(OBLIGATION_CONTRACT_ID) { Obligation(4.DOLLARS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(6.DOLLARS, BOB, ALICE) }
+                command(confidentialAlice.owningKey, ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Net() }
+                this.verifies()
+            }
+        }
+    }
+}
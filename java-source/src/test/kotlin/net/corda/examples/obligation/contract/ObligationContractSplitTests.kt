@@ -0,0 +1,121 @@
+package net.corda.examples.obligation.contract
+
+import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.ObligationContract
+import net.corda.examples.obligation.ObligationContract.OBLIGATION_CONTRACT_ID
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.testing.*
+import org.junit.Test
+
+class ObligationContractSplitTests : ObligationContractUnitTests() {
+
+    private val partlyPaidObligation = tenDollarObligation.pay(3.DOLLARS)
+
+    @Test
+    fun `must split one obligation into at least two`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(10.DOLLARS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "An obligation must be split into at least two obligations."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                tenDollarObligation.split(listOf(5.DOLLARS, 5.DOLLARS)).forEach { output(OBLIGATION_CONTRACT_ID) { it } }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "An obligation split transaction should only consume one input state."
+            }
+        }
+    }
+
+    @Test
+    fun `amounts and payments must sum to the original`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(6.DOLLARS, ALICE, BOB, 3.DOLLARS) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "The split amounts must sum to the original amount."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "The split payments must sum to the original amount paid."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, BOB, 3.DOLLARS) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.POUNDS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "The currency may not change when splitting."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(2.DOLLARS, ALICE, BOB, 3.DOLLARS) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(8.DOLLARS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "No part of a split obligation may be overpaid."
+            }
+        }
+    }
+
+    @Test
+    fun `parts must have new linear IDs and the same borrower`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, BOB, 0.DOLLARS, tenDollarObligation.linearId) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, BOB) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "Each part of a split obligation must have a new linear ID."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { tenDollarObligation }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, BOB) }
+                output(OBLIGATION_CONTRACT_ID) { Obligation(5.DOLLARS, ALICE, CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "The borrower may not change when splitting."
+            }
+        }
+    }
+
+    @Test
+    fun `split and partial transfer must be signed by the borrower and every lender`() {
+        ledger {
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                partlyPaidObligation.split(listOf(4.DOLLARS, 6.DOLLARS)).forEach { output(OBLIGATION_CONTRACT_ID) { it } }
+                command(ALICE_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "The borrower and every old and new lender only must sign an obligation split transaction."
+            }
+            transaction {
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                partlyPaidObligation.split(listOf(4.DOLLARS, 6.DOLLARS)).forEach { output(OBLIGATION_CONTRACT_ID) { it } }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this.verifies()
+            }
+            transaction {
+                val parts = partlyPaidObligation.split(listOf(4.DOLLARS, 6.DOLLARS))
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                output(OBLIGATION_CONTRACT_ID) { parts[0] }
+                output(OBLIGATION_CONTRACT_ID) { parts[1].withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY) { ObligationContract.Commands.Split() }
+                this `fails with` "The borrower and every old and new lender only must sign an obligation split transaction."
+            }
+            transaction {
+                val parts = partlyPaidObligation.split(listOf(4.DOLLARS, 6.DOLLARS))
+                input(OBLIGATION_CONTRACT_ID) { partlyPaidObligation }
+                output(OBLIGATION_CONTRACT_ID) { parts[0] }
+                output(OBLIGATION_CONTRACT_ID) { parts[1].withNewLender(CHARLIE) }
+                command(ALICE_PUBKEY, BOB_PUBKEY, CHARLIE_PUBKEY) { ObligationContract.Commands.Split() }
+                this.verifies()
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package net.corda.examples.obligation.flows
+
+import net.corda.examples.obligation.Obligation
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.testing.chooseIdentity
+import org.junit.Test
+import kotlin.test.assertEquals
+
+class BatchIssueObligationTests : ObligationTests() {
+
+    @Test
+    fun `Batch issue non-anonymous obligations to many lenders in one transaction`() {
+        val stx = batchIssueObligations(a, listOf(b to 1000.POUNDS, c to 500.DOLLARS, b to 250.POUNDS), anonymous = false)
+
+        network.waitQuiescent()
+
+        val obligations = stx.tx.outputsOfType<Obligation>()
+        assertEquals(3, obligations.size)
+        assertEquals(listOf(b.info.chooseIdentity(), c.info.chooseIdentity(), b.info.chooseIdentity()), obligations.map { it.lender })
+
+        // Every lender has the whole transaction.
+        val aTx = a.services.validatedTransactions.getTransaction(stx.id)
+        val bTx = b.services.validatedTransactions.getTransaction(stx.id)
+        val cTx = c.services.validatedTransactions.getTransaction(stx.id)
+        assertEquals(aTx, bTx)
+        assertEquals(aTx, cTx)
+    }
+
+    @Test
+    fun `Batch issue anonymous obligations to many lenders in one transaction`() {
+        val stx = batchIssueObligations(a, listOf(b to 1000.POUNDS, c to 500.DOLLARS))
+
+        network.waitQuiescent()
+
+        val obligations = stx.tx.outputsOfType<Obligation>()
+        val lenders = obligations.map { b.services.identityService.requireWellKnownPartyFromAnonymous(it.lender) }
+        assertEquals(listOf(b.info.chooseIdentity(), c.info.chooseIdentity()), lenders)
+        obligations.forEach {
+            assertEquals(a.info.chooseIdentity(), a.services.identityService.requireWellKnownPartyFromAnonymous(it.borrower))
+        }
+    }
+}
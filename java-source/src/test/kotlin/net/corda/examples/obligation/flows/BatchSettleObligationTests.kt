@@ -0,0 +1,76 @@
+package net.corda.examples.obligation.flows
+
+import net.corda.core.contracts.withoutIssuer
+import net.corda.core.flows.FlowException
+import net.corda.examples.obligation.Obligation
+import net.corda.finance.POUNDS
+import net.corda.finance.contracts.asset.Cash
+import net.corda.testing.chooseIdentity
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class BatchSettleObligationTests : ObligationTests() {
+
+    @Test
+    fun `Settle many obligations to one lender with a single cash output`() {
+        selfIssueCash(a, 1500.POUNDS)
+        network.waitQuiescent()
+
+        val issued = listOf(
+                issueObligation(a, b, 1000.POUNDS, anonymous = false),
+                issueObligation(a, b, 300.POUNDS, anonymous = false)
+        ).map { it.tx.outputsOfType<Obligation>().single() }
+        network.waitQuiescent()
+
+        val settleTransaction = batchSettleObligations(a, listOf(
+                issued[0].linearId to 400.POUNDS,
+                issued[1].linearId to 300.POUNDS))
+        network.waitQuiescent()
+
+        // The first obligation is partially settled and the second is fully settled.
+        val outputs = settleTransaction.tx.outputsOfType<Obligation>()
+        assertEquals(listOf(issued[0].pay(400.POUNDS)), outputs)
+
+        // A single payment to b, plus change to a.
+        val payments = settleTransaction.tx.outputsOfType<Cash.State>().filter { it.owner == b.info.chooseIdentity() }
+        assertEquals(1, payments.size)
+        assertEquals(700.POUNDS, payments.single().amount.withoutIssuer())
+
+        val aTx = a.services.validatedTransactions.getTransaction(settleTransaction.id)
+        val bTx = b.services.validatedTransactions.getTransaction(settleTransaction.id)
+        assertEquals(aTx, bTx)
+    }
+
+    @Test
+    fun `Batch settle fails when obligations are owed to different lenders`() {
+        selfIssueCash(a, 1500.POUNDS)
+        network.waitQuiescent()
+
+        val issued = listOf(
+                issueObligation(a, b, 100.POUNDS, anonymous = false),
+                issueObligation(a, c, 100.POUNDS, anonymous = false)
+        ).map { it.tx.outputsOfType<Obligation>().single() }
+        network.waitQuiescent()
+
+        assertFailsWith<FlowException> {
+            batchSettleObligations(a, issued.map { it.linearId to 100.POUNDS })
+        }
+    }
+
+    @Test
+    fun `Batch settle fails when borrower has too little cash`() {
+        selfIssueCash(a, 500.POUNDS)
+        network.waitQuiescent()
+
+        val issued = listOf(
+                issueObligation(a, b, 400.POUNDS, anonymous = false),
+                issueObligation(a, b, 400.POUNDS, anonymous = false)
+        ).map { it.tx.outputsOfType<Obligation>().single() }
+        network.waitQuiescent()
+
+        assertFailsWith<FlowException> {
+            batchSettleObligations(a, issued.map { it.linearId to 400.POUNDS })
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package net.corda.examples.obligation.flows
+
+import net.corda.core.flows.FlowException
+import net.corda.examples.obligation.Obligation
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.testing.chooseIdentity
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class BatchTransferObligationTests : ObligationTests() {
+
+    @Test
+    fun `Batch transfer non-anonymous obligations in one transaction`() {
+        val issued = listOf(
+                issueObligation(a, b, 1000.POUNDS, anonymous = false),
+                issueObligation(a, b, 500.DOLLARS, anonymous = false)
+        ).map { it.tx.outputsOfType<Obligation>().single() }
+        network.waitQuiescent()
+
+        val transferTransaction = batchTransferObligations(issued.map { it.linearId }, b, c, anonymous = false)
+        network.waitQuiescent()
+
+        val transferred = transferTransaction.tx.outputsOfType<Obligation>()
+        assertEquals(issued.map { it.withNewLender(c.info.chooseIdentity()) }.toSet(), transferred.toSet())
+
+        // Check everyone has the transfer transaction.
+        val aTx = a.services.validatedTransactions.getTransaction(transferTransaction.id)
+        val bTx = b.services.validatedTransactions.getTransaction(transferTransaction.id)
+        val cTx = c.services.validatedTransactions.getTransaction(transferTransaction.id)
+        assertEquals(aTx, bTx)
+        assertEquals(bTx, cTx)
+    }
+
+    @Test
+    fun `Batch transfer anonymous obligations to a single new lender identity`() {
+        val issued = listOf(
+                issueObligation(a, b, 1000.POUNDS),
+                issueObligation(a, b, 500.POUNDS)
+        ).map { it.tx.outputsOfType<Obligation>().single() }
+        network.waitQuiescent()
+
+        val transferTransaction = batchTransferObligations(issued.map { it.linearId }, b, c)
+        network.waitQuiescent()
+
+        val transferred = transferTransaction.tx.outputsOfType<Obligation>()
+        assertEquals(1, transferred.map { it.lender }.toSet().size)
+        assertEquals(c.info.chooseIdentity(), c.services.identityService.requireWellKnownPartyFromAnonymous(transferred.first().lender))
+    }
+
+    @Test
+    fun `Batch transfer flow can only be started by lender`() {
+        val issued = issueObligation(a, b, 1000.POUNDS, anonymous = false).tx.outputsOfType<Obligation>().single()
+        network.waitQuiescent()
+
+        assertFailsWith<FlowException> {
+            batchTransferObligations(listOf(issued.linearId), a, c, anonymous = false)
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.corda.examples.obligation.flows
+
+import net.corda.core.flows.FlowException
+import net.corda.core.utilities.getOrThrow
+import net.corda.examples.obligation.Obligation
+import net.corda.finance.GBP
+import net.corda.finance.POUNDS
+import net.corda.finance.DOLLARS
+import net.corda.testing.chooseIdentity
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class BilateralNetObligationsTests : ObligationTests() {
+
+    @Test
+    fun `Close out obligations in both directions to a single residual`() {
+        issueObligation(a, b, 100.POUNDS, anonymous = false)
+        issueObligation(a, b, 50.POUNDS, anonymous = false)
+        issueObligation(b, a, 70.POUNDS, anonymous = false)
+        // Neither of these should be netted.
+        issueObligation(b, a, 70.DOLLARS, anonymous = false)
+        issueObligation(a, c, 10.POUNDS, anonymous = false)
+        network.waitQuiescent()
+
+        val netTransaction = b.services.startFlow(BilateralNetObligations.Initiator(a.info.chooseIdentity(), GBP)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        assertEquals(3, netTransaction.tx.inputs.size)
+        val residual = netTransaction.tx.outputsOfType<Obligation>().single()
+        assertEquals(b.info.chooseIdentity(), residual.lender)
+        assertEquals(a.info.chooseIdentity(), residual.borrower)
+        assertEquals(80.POUNDS, residual.amount)
+
+        // Check both parties have the net transaction.
+        val aTx = a.services.validatedTransactions.getTransaction(netTransaction.id)
+        val bTx = b.services.validatedTransactions.getTransaction(netTransaction.id)
+        assertEquals(aTx, bTx)
+    }
+
+    @Test
+    fun `Each run closes out at most the given number of obligations, from both directions`() {
+        issueObligation(a, b, 100.POUNDS, anonymous = false)
+        issueObligation(a, b, 50.POUNDS, anonymous = false)
+        issueObligation(b, a, 70.POUNDS, anonymous = false)
+        network.waitQuiescent()
+
+        val netTransaction = b.services.startFlow(BilateralNetObligations.Initiator(a.info.chooseIdentity(), GBP, 2)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        val netted = netTransaction.tx.toLedgerTransaction(b.services).inputsOfType<Obligation>()
+        assertEquals(2, netted.size)
+        assertEquals(setOf(a.info.chooseIdentity(), b.info.chooseIdentity()), netted.map { it.lender }.toSet())
+    }
+
+    @Test
+    fun `Close out confidential obligations between the parties they belong to`() {
+        issueObligation(a, b, 100.POUNDS)
+        issueObligation(a, b, 50.POUNDS)
+        issueObligation(b, a, 70.POUNDS)
+        network.waitQuiescent()
+
+        val netTransaction = b.services.startFlow(BilateralNetObligations.Initiator(a.info.chooseIdentity(), GBP)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        assertEquals(3, netTransaction.tx.inputs.size)
+        val residual = netTransaction.tx.outputsOfType<Obligation>().single()
+        assertEquals(b.info.chooseIdentity(), residual.lender)
+        assertEquals(a.info.chooseIdentity(), residual.borrower)
+        assertEquals(80.POUNDS, residual.amount)
+        assertEquals(netTransaction, a.services.validatedTransactions.getTransaction(netTransaction.id))
+    }
+
+    @Test
+    fun `Equal obligations in both directions cancel out`() {
+        issueObligation(a, b, 100.POUNDS, anonymous = false)
+        issueObligation(b, a, 100.POUNDS, anonymous = false)
+        network.waitQuiescent()
+
+        val netTransaction = a.services.startFlow(BilateralNetObligations.Initiator(b.info.chooseIdentity(), GBP)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        assertTrue(netTransaction.tx.outputs.isEmpty())
+    }
+
+    @Test
+    fun `Close out fails unless there are obligations in both directions`() {
+        issueObligation(a, b, 100.POUNDS, anonymous = false)
+        issueObligation(a, b, 50.POUNDS, anonymous = false)
+        network.waitQuiescent()
+
+        assertFailsWith<FlowException> {
+            b.services.startFlow(BilateralNetObligations.Initiator(a.info.chooseIdentity(), GBP)).resultFuture.getOrThrow()
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package net.corda.examples.obligation.flows
 
+import net.corda.core.node.services.queryBy
+import net.corda.core.node.services.vault.QueryCriteria
+import net.corda.core.node.services.vault.builder
 import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.schema.ObligationSchemaV1
+import net.corda.examples.obligation.schema.ObligationSchemaV1.PersistentObligation
+import net.corda.examples.obligation.services.FlowMetricsService
+import net.corda.examples.obligation.services.IdentityCacheService
 import net.corda.finance.POUNDS
 import net.corda.testing.chooseIdentity
 import org.junit.Test
@@ -47,4 +54,60 @@ class IssueObligationTests : ObligationTests() {
         assertEquals(bIdentity, maybePartyClookedUpByA)
         assertEquals(bIdentity, maybePartyClookedUpByB)
     }
+
+    @Test
+    fun `issued obligation can be queried by lender key hash`() {
+        val stx = issueObligation(a, b, 1000.POUNDS)
+
+        network.waitQuiescent()
+
+        val issuedObligation = stx.tx.outputsOfType<Obligation>().single()
+        val lenderField = PersistentObligation::class.java.getDeclaredField("lenderKeyHash")
+        val criteria = QueryCriteria.VaultCustomQueryCriteria(builder {
+            lenderField.equal(ObligationSchemaV1.keyHash(issuedObligation.lender))
+        })
+
+        val aResults = a.database.transaction { a.services.vaultService.queryBy<Obligation>(criteria).states }
+        val bResults = b.database.transaction { b.services.vaultService.queryBy<Obligation>(criteria).states }
+
+        assertEquals(listOf(issuedObligation), aResults.map { it.state.data })
+        assertEquals(listOf(issuedObligation), bResults.map { it.state.data })
+    }
+
+    @Test
+    fun `issue records flow and step timings`() {
+        issueObligation(a, b, 1000.POUNDS)
+
+        network.waitQuiescent()
+
+        val aMetrics = a.services.cordaService(FlowMetricsService::class.java).registry
+        val bMetrics = b.services.cordaService(FlowMetricsService::class.java).registry
+
+        assertEquals(1, aMetrics.counter("IssueObligation.Initiator.succeeded").count)
+        assertEquals(1, aMetrics.timer("IssueObligation.Initiator.duration").count)
+        listOf("Performing initial steps", "Building transaction", "Signing transaction",
+                "Collecting counterparty signature", "Finalising transaction").forEach {
+            assertEquals(1, aMetrics.timer("IssueObligation.Initiator.steps.$it").count, it)
+        }
+
+        assertEquals(1, bMetrics.counter("IssueObligation.Responder.succeeded").count)
+        listOf("Signing transaction", "Waiting for ledger commit").forEach {
+            assertEquals(1, bMetrics.timer("IssueObligation.Responder.steps.$it").count, it)
+        }
+    }
+
+    @Test
+    fun `identity cache hits and misses are published with the flow metrics`() {
+        val identities = a.services.cordaService(IdentityCacheService::class.java)
+        val party = b.info.chooseIdentity()
+        identities.wellKnownPartyFromAnonymous(party)
+
+        val aMetrics = a.services.cordaService(FlowMetricsService::class.java).registry
+        val hits = aMetrics.gauges["IdentityCache.hits"]!!.value as Long
+        val misses = aMetrics.gauges["IdentityCache.misses"]!!.value as Long
+        identities.wellKnownPartyFromAnonymous(party)
+
+        assertEquals(hits + 1, aMetrics.gauges["IdentityCache.hits"]!!.value)
+        assertEquals(misses, aMetrics.gauges["IdentityCache.misses"]!!.value)
+    }
 }
@@ -0,0 +1,76 @@
+package net.corda.examples.obligation.flows
+
+import net.corda.core.flows.FlowException
+import net.corda.core.node.services.queryBy
+import net.corda.core.utilities.getOrThrow
+import net.corda.examples.obligation.Obligation
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class MergeObligationsTests : ObligationTests() {
+
+    @Test
+    fun `Merge anonymous obligations between the same parties`() {
+        issueObligation(a, b, 100.POUNDS)
+        issueObligation(a, b, 50.POUNDS)
+        issueObligation(a, b, 25.POUNDS)
+        // Neither of these should be merged.
+        issueObligation(a, b, 10.DOLLARS)
+        issueObligation(a, c, 10.POUNDS)
+        network.waitQuiescent()
+
+        val mergeTransaction = a.services.startFlow(MergeObligations.Initiator(10)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        assertEquals(3, mergeTransaction.tx.inputs.size)
+        val merged = mergeTransaction.tx.outputsOfType<Obligation>().single()
+        assertEquals(175.POUNDS, merged.amount)
+        assertEquals(0.POUNDS, merged.paid)
+
+        // Check both parties have the merge transaction and the smaller vault.
+        val aTx = a.services.validatedTransactions.getTransaction(mergeTransaction.id)
+        val bTx = b.services.validatedTransactions.getTransaction(mergeTransaction.id)
+        assertEquals(aTx, bTx)
+        b.database.transaction {
+            assertEquals(2, b.services.vaultService.queryBy<Obligation>().states.size)
+        }
+    }
+
+    @Test
+    fun `Merge in bounded batches`() {
+        (1..5).forEach { issueObligation(a, b, it.POUNDS, anonymous = false) }
+        network.waitQuiescent()
+
+        val first = b.services.startFlow(MergeObligations.Initiator(3)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+        assertEquals(3, first.tx.inputs.size)
+
+        val second = b.services.startFlow(MergeObligations.Initiator(3)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+        assertEquals(3, second.tx.inputs.size)
+        assertEquals(15.POUNDS, second.tx.outputsOfType<Obligation>().single().amount)
+
+        assertFailsWith<FlowException> {
+            b.services.startFlow(MergeObligations.Initiator(3)).resultFuture.getOrThrow()
+        }
+    }
+
+    @Test
+    fun `Only the borrower merges when asked to`() {
+        issueObligation(a, b, 100.POUNDS)
+        issueObligation(a, b, 50.POUNDS)
+        network.waitQuiescent()
+
+        // b only lent, so has nothing to merge as the borrower.
+        assertFailsWith<FlowException> {
+            b.services.startFlow(MergeObligations.Initiator(10, true)).resultFuture.getOrThrow()
+        }
+
+        val mergeTransaction = a.services.startFlow(MergeObligations.Initiator(10, true)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+        assertEquals(150.POUNDS, mergeTransaction.tx.outputsOfType<Obligation>().single().amount)
+    }
+}
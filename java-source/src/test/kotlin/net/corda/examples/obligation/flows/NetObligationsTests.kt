@@ -0,0 +1,103 @@
+package net.corda.examples.obligation.flows
+
+import net.corda.core.flows.FlowException
+import net.corda.core.utilities.getOrThrow
+import net.corda.examples.obligation.Obligation
+import net.corda.finance.GBP
+import net.corda.finance.POUNDS
+import net.corda.testing.chooseIdentity
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class NetObligationsTests : ObligationTests() {
+
+    @Test
+    fun `Net a cycle through the initiator into a single obligation`() {
+        // a owes b, b owes c and c owes a. a's vault only holds the first and last of these.
+        issueObligation(a, b, 100.POUNDS, anonymous = false)
+        issueObligation(b, c, 100.POUNDS, anonymous = false)
+        issueObligation(c, a, 100.POUNDS, anonymous = false)
+        network.waitQuiescent()
+
+        val netTransaction = a.services.startFlow(NetObligations.Initiator(GBP)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        // a nets to zero, so c now owes b directly.
+        val residual = netTransaction.tx.outputsOfType<Obligation>().single()
+        assertEquals(2, netTransaction.tx.inputs.size)
+        assertEquals(b.info.chooseIdentity(), residual.lender)
+        assertEquals(c.info.chooseIdentity(), residual.borrower)
+        assertEquals(100.POUNDS, residual.amount)
+
+        // Check everyone has the net transaction.
+        val aTx = a.services.validatedTransactions.getTransaction(netTransaction.id)
+        val bTx = b.services.validatedTransactions.getTransaction(netTransaction.id)
+        val cTx = c.services.validatedTransactions.getTransaction(netTransaction.id)
+        assertEquals(aTx, bTx)
+        assertEquals(bTx, cTx)
+    }
+
+    @Test
+    fun `Net opposing obligations away entirely`() {
+        issueObligation(a, b, 100.POUNDS, anonymous = false)
+        issueObligation(b, a, 100.POUNDS, anonymous = false)
+        network.waitQuiescent()
+
+        val netTransaction = a.services.startFlow(NetObligations.Initiator(GBP)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        assertTrue(netTransaction.tx.outputs.isEmpty())
+        assertEquals(2, netTransaction.tx.inputs.size)
+    }
+
+    @Test
+    fun `Each run nets at most the given number of obligations`() {
+        repeat(2) {
+            issueObligation(a, b, 100.POUNDS, anonymous = false)
+            issueObligation(b, a, 100.POUNDS, anonymous = false)
+        }
+        network.waitQuiescent()
+
+        val first = a.services.startFlow(NetObligations.Initiator(GBP, 2)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+        assertEquals(2, first.tx.inputs.size)
+
+        val second = a.services.startFlow(NetObligations.Initiator(GBP, 2)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+        assertEquals(2, second.tx.inputs.size)
+    }
+
+    @Test
+    fun `Netting fails when nothing can be netted`() {
+        issueObligation(a, b, 100.POUNDS, anonymous = false)
+        issueObligation(a, c, 100.POUNDS, anonymous = false)
+        network.waitQuiescent()
+
+        assertFailsWith<FlowException> {
+            a.services.startFlow(NetObligations.Initiator(GBP)).resultFuture.getOrThrow()
+        }
+    }
+
+    @Test
+    fun `Net confidential obligations between the parties they belong to`() {
+        // a owes b, b owes c and c owes a, each under fresh confidential identities.
+        issueObligation(a, b, 100.POUNDS)
+        issueObligation(b, c, 100.POUNDS)
+        issueObligation(c, a, 100.POUNDS)
+        network.waitQuiescent()
+
+        val netTransaction = a.services.startFlow(NetObligations.Initiator(GBP)).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        // a nets to zero, so c now owes b directly, between their well-known identities.
+        val residual = netTransaction.tx.outputsOfType<Obligation>().single()
+        assertEquals(2, netTransaction.tx.inputs.size)
+        assertEquals(b.info.chooseIdentity(), residual.lender)
+        assertEquals(c.info.chooseIdentity(), residual.borrower)
+        assertEquals(100.POUNDS, residual.amount)
+        assertEquals(netTransaction, b.services.validatedTransactions.getTransaction(netTransaction.id))
+        assertEquals(netTransaction, c.services.validatedTransactions.getTransaction(netTransaction.id))
+    }
+}
@@ -1,8 +1,13 @@
 package net.corda.examples.obligation.flows
 
+import net.corda.core.identity.CordaX500Name
+import net.corda.core.identity.Party
+import net.corda.core.messaging.SingleMessageRecipient
 import net.corda.core.utilities.OpaqueBytes
 import net.corda.core.utilities.getOrThrow
 import net.corda.finance.flows.CashIssueFlow
+import net.corda.node.services.transactions.ValidatingNotaryService
+import net.corda.nodeapi.internal.ServiceInfo
 import net.corda.testing.chooseIdentity
 import net.corda.testing.node.MockNetwork
 import net.corda.testing.setCordappPackages
@@ -17,6 +22,7 @@ abstract class ObligationTests {
     lateinit var a: net.corda.node.internal.StartedNode<MockNetwork.MockNode>
     lateinit var b: net.corda.node.internal.StartedNode<MockNetwork.MockNode>
     lateinit var c: net.corda.node.internal.StartedNode<MockNetwork.MockNode>
+    private lateinit var networkMapAddress: SingleMessageRecipient
 
     @org.junit.Before
     fun setup() {
@@ -28,10 +34,18 @@ abstract class ObligationTests {
         a = nodes.partyNodes[0]
         b = nodes.partyNodes[1]
         c = nodes.partyNodes[2]
+        networkMapAddress = nodes.mapNode.network.myAddress
 
         nodes.partyNodes.forEach {
             it.registerInitiatedFlow(IssueObligation.Responder::class.java)
             it.registerInitiatedFlow(TransferObligation.Responder::class.java)
+            it.registerInitiatedFlow(BatchIssueObligation.Responder::class.java)
+            it.registerInitiatedFlow(BatchTransferObligation.Responder::class.java)
+            it.registerInitiatedFlow(BatchSettleObligation.Responder::class.java)
+            it.registerInitiatedFlow(NetObligations.Responder::class.java)
+            it.registerInitiatedFlow(BilateralNetObligations.Responder::class.java)
+            it.registerInitiatedFlow(MergeObligations.Responder::class.java)
+            it.registerInitiatedFlow(SplitObligation.Responder::class.java)
         }
     }
 
@@ -51,6 +65,15 @@ abstract class ObligationTests {
         return borrower.services.startFlow(flow).resultFuture.getOrThrow()
     }
 
+    protected fun batchIssueObligations(borrower: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
+                                        loans: List<Pair<net.corda.node.internal.StartedNode<MockNetwork.MockNode>, net.corda.core.contracts.Amount<Currency>>>,
+                                        anonymous: Boolean = true
+    ): net.corda.core.transactions.SignedTransaction {
+        val requests = loans.map { (lender, amount) -> BatchIssueObligation.IssueRequest(amount, lender.info.chooseIdentity()) }
+        val flow = BatchIssueObligation.Initiator(requests, anonymous)
+        return borrower.services.startFlow(flow).resultFuture.getOrThrow()
+    }
+
     protected fun transferObligation(linearId: net.corda.core.contracts.UniqueIdentifier,
                                      lender: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
                                      newLender: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
@@ -61,6 +84,16 @@ abstract class ObligationTests {
         return lender.services.startFlow(flow).resultFuture.getOrThrow()
     }
 
+    protected fun batchTransferObligations(linearIds: List<net.corda.core.contracts.UniqueIdentifier>,
+                                           lender: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
+                                           newLender: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
+                                           anonymous: Boolean = true
+    ): net.corda.core.transactions.SignedTransaction {
+        val newLenderIdentity = newLender.info.chooseIdentity()
+        val flow = BatchTransferObligation.Initiator(linearIds, newLenderIdentity, anonymous)
+        return lender.services.startFlow(flow).resultFuture.getOrThrow()
+    }
+
     protected fun settleObligation(linearId: net.corda.core.contracts.UniqueIdentifier,
                                    borrower: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
                                    amount: net.corda.core.contracts.Amount<Currency>,
@@ -70,13 +103,30 @@ abstract class ObligationTests {
         return borrower.services.startFlow(flow).resultFuture.getOrThrow()
     }
 
+    protected fun batchSettleObligations(borrower: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
+                                         payments: List<Pair<net.corda.core.contracts.UniqueIdentifier, net.corda.core.contracts.Amount<Currency>>>
+    ): net.corda.core.transactions.SignedTransaction {
+        val requests = payments.map { (linearId, amount) -> BatchSettleObligation.SettleRequest(linearId, amount) }
+        val flow = BatchSettleObligation.Initiator(requests)
+        return borrower.services.startFlow(flow).resultFuture.getOrThrow()
+    }
+
     protected fun selfIssueCash(party: net.corda.node.internal.StartedNode<MockNetwork.MockNode>,
-                                amount: net.corda.core.contracts.Amount<Currency>): net.corda.core.transactions.SignedTransaction {
-        val notary = party.services.networkMapCache.notaryIdentities.firstOrNull()
-                ?: throw IllegalStateException("Could not find a notary.")
+                                amount: net.corda.core.contracts.Amount<Currency>,
+                                notary: Party = party.services.networkMapCache.notaryIdentities.firstOrNull()
+                                        ?: throw IllegalStateException("Could not find a notary.")
+    ): net.corda.core.transactions.SignedTransaction {
         val issueRef = OpaqueBytes.Companion.of(0)
         val issueRequest = CashIssueFlow.IssueRequest(amount, issueRef, notary)
         val flow = CashIssueFlow(issueRequest)
         return party.services.startFlow(flow).resultFuture.getOrThrow().stx
     }
+
+    /** Adds another validating notary to the network, for tests of obligations and cash on different notaries. */
+    protected fun createNotary(name: CordaX500Name): net.corda.node.internal.StartedNode<MockNetwork.MockNode> {
+        val notary = network.createNode(networkMapAddress, legalName = name,
+                advertisedServices = *arrayOf(ServiceInfo(ValidatingNotaryService.type)))
+        network.waitQuiescent()
+        return notary
+    }
 }
@@ -2,7 +2,9 @@ package net.corda.examples.obligation.flows
 
 import net.corda.core.contracts.withoutIssuer
 import net.corda.core.flows.FlowException
+import net.corda.core.identity.CordaX500Name
 import net.corda.examples.obligation.Obligation
+import net.corda.examples.obligation.services.FlowMetricsService
 import net.corda.finance.POUNDS
 import net.corda.finance.contracts.asset.Cash
 import net.corda.node.internal.StartedNode
@@ -218,4 +220,32 @@ class SettleObligationTests : ObligationTests() {
         val payment = getCashOutputByOwner(outputCash, b)
         assert(payment.amount.withoutIssuer() == 500.POUNDS)
     }
-}
\ No newline at end of file
+
+    @org.junit.Test
+    fun `Settle flow moves the obligation to the notary the cash is on`() {
+        createNotary(CordaX500Name("NotaryB", "Frankfurt", "DE"))
+
+        // Issue obligation, then issue the borrower cash on the other notary.
+        val issuanceTransaction = issueObligation(a, b, 1000.POUNDS)
+        network.waitQuiescent()
+        val issuedObligation = issuanceTransaction.tx.outputStates.first() as Obligation
+        val obligationNotary = issuanceTransaction.tx.notary!!
+        val cashNotary = a.services.networkMapCache.notaryIdentities.single { it != obligationNotary }
+        selfIssueCash(a, 1000.POUNDS, cashNotary)
+        network.waitQuiescent()
+
+        // Settle the obligation in full.
+        val settleTransaction = settleObligation(issuedObligation.linearId, a, 1000.POUNDS)
+        network.waitQuiescent()
+
+        // The settlement happened on the cash's notary and the lender got paid.
+        kotlin.test.assertEquals(cashNotary, settleTransaction.tx.notary)
+        val cash = settleTransaction.tx.outputsOfType<Cash.State>()
+        kotlin.test.assertEquals(1000.POUNDS, getCashOutputByOwner(cash, b).amount.withoutIssuer())
+        kotlin.test.assertNotNull(b.services.validatedTransactions.getTransaction(settleTransaction.id))
+
+        // The notary change is timed as a step of its own.
+        val aMetrics = a.services.cordaService(FlowMetricsService::class.java).registry
+        kotlin.test.assertEquals(1, aMetrics.timer("SettleObligation.Initiator.steps.Moving IOU to the notary our cash is on").count)
+    }
+}
@@ -0,0 +1,94 @@
+package net.corda.examples.obligation.flows
+
+import net.corda.core.flows.FlowException
+import net.corda.core.utilities.getOrThrow
+import net.corda.examples.obligation.Obligation
+import net.corda.finance.POUNDS
+import net.corda.testing.chooseIdentity
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class SplitObligationTests : ObligationTests() {
+
+    @Test
+    fun `Split an anonymous obligation into parts with new linear IDs`() {
+        val issued = issueObligation(a, b, 1000.POUNDS).tx.outputsOfType<Obligation>().single()
+        network.waitQuiescent()
+
+        val flow = SplitObligation.Initiator(issued.linearId, listOf(600.POUNDS, 300.POUNDS, 100.POUNDS))
+        val splitTransaction = a.services.startFlow(flow).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        val parts = splitTransaction.tx.outputsOfType<Obligation>()
+        assertEquals(listOf(600.POUNDS, 300.POUNDS, 100.POUNDS), parts.map { it.amount })
+        assertEquals(setOf(issued.lender), parts.map { it.lender }.toSet())
+        assertEquals(3, parts.map { it.linearId }.toSet().size)
+
+        val aTx = a.services.validatedTransactions.getTransaction(splitTransaction.id)
+        val bTx = b.services.validatedTransactions.getTransaction(splitTransaction.id)
+        assertEquals(aTx, bTx)
+    }
+
+    @Test
+    fun `Split fails if the parts do not sum to the amount`() {
+        val issued = issueObligation(a, b, 1000.POUNDS).tx.outputsOfType<Obligation>().single()
+        network.waitQuiescent()
+
+        assertFailsWith<FlowException> {
+            b.services.startFlow(SplitObligation.Initiator(issued.linearId, listOf(600.POUNDS, 300.POUNDS))).resultFuture.getOrThrow()
+        }
+    }
+
+    @Test
+    fun `Transfer only part of an obligation`() {
+        val issued = issueObligation(a, b, 1000.POUNDS, anonymous = false).tx.outputsOfType<Obligation>().single()
+        network.waitQuiescent()
+
+        val flow = TransferObligation.Initiator(issued.linearId, c.info.chooseIdentity(), false, 250.POUNDS)
+        val transferTransaction = b.services.startFlow(flow).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        val (retained, transferred) = transferTransaction.tx.outputsOfType<Obligation>()
+        assertEquals(b.info.chooseIdentity(), retained.lender)
+        assertEquals(750.POUNDS, retained.amount)
+        assertEquals(c.info.chooseIdentity(), transferred.lender)
+        assertEquals(250.POUNDS, transferred.amount)
+
+        val aTx = a.services.validatedTransactions.getTransaction(transferTransaction.id)
+        val bTx = b.services.validatedTransactions.getTransaction(transferTransaction.id)
+        val cTx = c.services.validatedTransactions.getTransaction(transferTransaction.id)
+        assertEquals(aTx, bTx)
+        assertEquals(bTx, cTx)
+    }
+
+    @Test
+    fun `Cannot transfer more than is outstanding`() {
+        val issued = issueObligation(a, b, 1000.POUNDS, anonymous = false).tx.outputsOfType<Obligation>().single()
+        network.waitQuiescent()
+
+        assertFailsWith<FlowException> {
+            val flow = TransferObligation.Initiator(issued.linearId, c.info.chooseIdentity(), false, 1001.POUNDS)
+            b.services.startFlow(flow).resultFuture.getOrThrow()
+        }
+    }
+
+    @Test
+    fun `Transferring everything outstanding moves the whole obligation`() {
+        val issued = issueObligation(a, b, 1000.POUNDS, anonymous = false).tx.outputsOfType<Obligation>().single()
+        network.waitQuiescent()
+        selfIssueCash(a, 400.POUNDS)
+        settleObligation(issued.linearId, a, 400.POUNDS)
+        network.waitQuiescent()
+
+        val flow = TransferObligation.Initiator(issued.linearId, c.info.chooseIdentity(), false, 600.POUNDS)
+        val transferTransaction = b.services.startFlow(flow).resultFuture.getOrThrow()
+        network.waitQuiescent()
+
+        val transferred = transferTransaction.tx.outputsOfType<Obligation>().single()
+        assertEquals(issued.linearId, transferred.linearId)
+        assertEquals(c.info.chooseIdentity(), transferred.lender)
+        assertEquals(1000.POUNDS, transferred.amount)
+        assertEquals(400.POUNDS, transferred.paid)
+    }
+}
@@ -0,0 +1,65 @@
+package net.corda.examples.obligation.services
+
+import net.corda.core.contracts.Amount
+import net.corda.core.contracts.StateAndRef
+import net.corda.core.contracts.StateRef
+import net.corda.core.contracts.TransactionState
+import net.corda.core.crypto.SecureHash
+import net.corda.core.crypto.generateKeyPair
+import net.corda.core.identity.CordaX500Name
+import net.corda.core.identity.Party
+import net.corda.core.node.services.Vault
+import net.corda.core.utilities.OpaqueBytes
+import net.corda.finance.DOLLARS
+import net.corda.finance.POUNDS
+import net.corda.finance.USD
+import net.corda.finance.contracts.asset.CASH_PROGRAM_ID
+import net.corda.finance.contracts.asset.Cash
+import net.corda.finance.`issued by`
+import net.corda.testing.ALICE
+import net.corda.testing.DUMMY_NOTARY
+import net.corda.testing.MEGA_CORP
+import org.junit.Test
+import java.util.*
+import kotlin.test.assertEquals
+
+class CashBalancesTests {
+    private val notaryA = DUMMY_NOTARY
+    private val notaryB = Party(CordaX500Name("NotaryB", "Frankfurt", "DE"), generateKeyPair().public)
+    private val issuer = MEGA_CORP.ref(OpaqueBytes(ByteArray(1)))
+    private val balances = CashBalances()
+
+    private fun cash(amount: Amount<Currency>, notary: Party = notaryA): StateAndRef<Cash.State> {
+        val state = Cash.State(amount `issued by` issuer, ALICE)
+        return StateAndRef(TransactionState(state, CASH_PROGRAM_ID, notary), StateRef(SecureHash.randomSHA256(), 0))
+    }
+
+    @Test
+    fun `balances are totalled by currency and by notary`() {
+        balances.add(cash(10.DOLLARS))
+        balances.add(cash(5.DOLLARS, notaryB))
+        balances.add(cash(3.POUNDS))
+        assertEquals(15.DOLLARS, balances.getBalance(USD))
+        assertEquals(5.DOLLARS, balances.getBalanceOnNotary(USD, notaryB))
+        assertEquals(mapOf(USD to 15.DOLLARS, Currency.getInstance("GBP") to 3.POUNDS), balances.getBalances())
+    }
+
+    @Test
+    fun `updates move the balances`() {
+        val spent = cash(10.DOLLARS)
+        balances.add(spent)
+        balances.apply(Vault.Update(setOf(spent), setOf(cash(4.DOLLARS))))
+        assertEquals(4.DOLLARS, balances.getBalance(USD))
+    }
+
+    @Test
+    fun `a state is only counted once`() {
+        val state = cash(10.DOLLARS)
+        balances.add(state)
+        balances.add(state)
+        balances.remove(state)
+        balances.remove(state)
+        assertEquals(0.DOLLARS, balances.getBalance(USD))
+        assertEquals(emptyMap(), balances.getBalances())
+    }
+}
@@ -0,0 +1,57 @@
+package net.corda.examples.obligation.services
+
+import net.corda.core.identity.AbstractParty
+import net.corda.core.identity.AnonymousParty
+import net.corda.core.identity.Party
+import net.corda.testing.ALICE
+import net.corda.testing.ALICE_PUBKEY
+import net.corda.testing.BOB_PUBKEY
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+
+class IdentityCacheTests {
+    private val knownParty = AnonymousParty(ALICE_PUBKEY)
+    private val unknownParty = AnonymousParty(BOB_PUBKEY)
+
+    private val lookups = mutableListOf<AbstractParty>()
+    private val registered = mutableMapOf<AbstractParty, Party>(knownParty to ALICE)
+    private val cache = IdentityCache { lookups.add(it); registered[it] }
+
+    @Test
+    fun `resolved identities are only looked up once`() {
+        assertEquals(ALICE, cache.wellKnownPartyFromAnonymous(knownParty))
+        assertEquals(ALICE, cache.wellKnownPartyFromAnonymous(knownParty))
+
+        assertEquals(listOf<AbstractParty>(knownParty), lookups)
+        assertEquals(1, cache.stats.hitCount())
+        assertEquals(1, cache.stats.missCount())
+    }
+
+    @Test
+    fun `unresolved identities are not cached`() {
+        assertNull(cache.wellKnownPartyFromAnonymous(unknownParty))
+        registered[unknownParty] = ALICE
+        assertEquals(ALICE, cache.wellKnownPartyFromAnonymous(unknownParty))
+
+        assertEquals(listOf<AbstractParty>(unknownParty, unknownParty), lookups)
+    }
+
+    @Test
+    fun `require fails for unresolved identities`() {
+        assertFailsWith<IllegalStateException> {
+            cache.requireWellKnownPartyFromAnonymous(unknownParty)
+        }
+    }
+
+    @Test
+    fun `cache is bounded`() {
+        val smallCache = IdentityCache(1) { registered[it] }
+        registered[unknownParty] = ALICE
+        smallCache.wellKnownPartyFromAnonymous(knownParty)
+        smallCache.wellKnownPartyFromAnonymous(unknownParty)
+
+        assertEquals(1, smallCache.size())
+    }
+}
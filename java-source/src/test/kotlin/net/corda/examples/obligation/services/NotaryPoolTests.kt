@@ -0,0 +1,45 @@
+package net.corda.examples.obligation.services
+
+import net.corda.core.contracts.UniqueIdentifier
+import net.corda.core.crypto.generateKeyPair
+import net.corda.core.identity.CordaX500Name
+import net.corda.core.identity.Party
+import net.corda.examples.obligation.services.NotaryPool.Strategy.*
+import net.corda.testing.DUMMY_NOTARY
+import org.junit.Test
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class NotaryPoolTests {
+    private val notaryA = DUMMY_NOTARY
+    private val notaryB = Party(CordaX500Name("NotaryB", "Frankfurt", "DE"), generateKeyPair().public)
+    private val pool = NotaryPool().apply { update(listOf(notaryB, notaryA)) }
+
+    @Test
+    fun `no notary is selected from an empty pool`() {
+        assertNull(NotaryPool().select(ROUND_ROBIN, UniqueIdentifier()))
+    }
+
+    @Test
+    fun `round robin cycles through every notary`() {
+        val selected = (1..4).map { pool.select(ROUND_ROBIN, UniqueIdentifier()) }
+        assertEquals(listOf(notaryA, notaryB, notaryA, notaryB), selected)
+    }
+
+    @Test
+    fun `hashing always picks the same notary for a linear ID`() {
+        val linearId = UniqueIdentifier()
+        val other = NotaryPool().apply { update(listOf(notaryA, notaryB)) }
+        assertEquals(pool.select(HASH_BY_LINEAR_ID, linearId), other.select(HASH_BY_LINEAR_ID, linearId))
+    }
+
+    @Test
+    fun `least latency prefers the fastest notary`() {
+        pool.recordLatency(notaryA, Duration.ofMillis(500))
+        assertEquals(notaryB, pool.select(LEAST_LATENCY, UniqueIdentifier()))
+
+        pool.recordLatency(notaryB, Duration.ofMillis(900))
+        assertEquals(notaryA, pool.select(LEAST_LATENCY, UniqueIdentifier()))
+    }
+}